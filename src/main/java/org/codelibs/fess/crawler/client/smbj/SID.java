@@ -28,7 +28,6 @@ import static com.hierynomus.msdtyp.SID.SidType.SID_TYPE_WKN_GRP;
 
 import java.util.Arrays;
 
-import org.apache.commons.io.IOUtils;
 import org.codelibs.fess.crawler.client.smbj.pool.SmbSessionLoader;
 import org.codelibs.fess.crawler.exception.CrawlingAccessException;
 import org.slf4j.Logger;
@@ -116,7 +115,7 @@ public class SID extends com.hierynomus.msdtyp.SID {
             if (logger.isDebugEnabled()) {
                 logger.debug("Failed to access {}", sid, e);
             }
-            IOUtils.closeQuietly(session);
+            sessionLoader.releaseObject(session, e);
         }
     }
 
@@ -163,6 +162,13 @@ public class SID extends com.hierynomus.msdtyp.SID {
         return parent.hashCode();
     }
 
+    /**
+     * @return the SID in the S-R-I-S... form
+     */
+    public String getSidString() {
+        return parent.toString();
+    }
+
     public String getAccountName() {
         if (accountName == null) {
             loadAccountAndDomainName();
@@ -231,7 +237,7 @@ public class SID extends com.hierynomus.msdtyp.SID {
             sessionLoader.returnObject(session);
             return memberSids;
         } catch (final Exception e) {
-            IOUtils.closeQuietly(session);
+            sessionLoader.releaseObject(session, e);
             throw new CrawlingAccessException("Failed to access group members for " + this, e);
         }
     }
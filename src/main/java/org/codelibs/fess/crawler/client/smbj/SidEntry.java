@@ -0,0 +1,186 @@
+/*
+ * Copyright 2012-2024 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.client.smbj;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import com.hierynomus.msdtyp.SID.SidType;
+
+/**
+ * Immutable SID with its resolved names, stored in {@link org.codelibs.fess.crawler.entity.ResponseData} metadata.
+ * Instances are interned, so documents with the same ACL share them, and they hold no session.
+ */
+public final class SidEntry {
+
+    private static final Map<SidEntry, WeakReference<SidEntry>> INTERN_MAP = new WeakHashMap<>();
+
+    private final byte revision;
+
+    private final long identifierAuthority;
+
+    private final int[] subAuthorities;
+
+    private final SidType sidType;
+
+    private final String accountName;
+
+    private final String domainName;
+
+    private final int hashCode;
+
+    private SidEntry(final byte revision, final long identifierAuthority, final int[] subAuthorities, final SidType sidType,
+            final String accountName, final String domainName) {
+        this.revision = revision;
+        this.identifierAuthority = identifierAuthority;
+        this.subAuthorities = subAuthorities;
+        this.sidType = sidType;
+        this.accountName = accountName != null ? accountName.intern() : null;
+        this.domainName = domainName != null ? domainName.intern() : null;
+        this.hashCode = 31 * (31 * revision + Long.hashCode(identifierAuthority)) + Arrays.hashCode(subAuthorities);
+    }
+
+    /**
+     * Returns the interned entry of the SID. An interned entry without names is replaced when names are given.
+     *
+     * @param sid the SID
+     * @param sidType the type of the SID
+     * @param accountName the account name, or null if not resolved
+     * @param domainName the domain name, or null if not resolved
+     * @return the interned entry
+     */
+    public static SidEntry of(final com.hierynomus.msdtyp.SID sid, final SidType sidType, final String accountName,
+            final String domainName) {
+        final SidEntry entry = new SidEntry(sid.getRevision(), toAuthority(sid.getSidIdentifierAuthority()),
+                toSubAuthorities(sid.getSubAuthorities()), sidType, accountName, domainName);
+        synchronized (INTERN_MAP) {
+            final SidEntry interned = get(entry);
+            if (interned != null && (interned.accountName != null || accountName == null)) {
+                return interned;
+            }
+            if (interned != null) {
+                // WeakHashMap keeps the old key on put
+                INTERN_MAP.remove(interned);
+            }
+            INTERN_MAP.put(entry, new WeakReference<>(entry));
+            return entry;
+        }
+    }
+
+    /**
+     * @param sid the SID
+     * @return the interned entry of the SID, or null
+     */
+    public static SidEntry find(final com.hierynomus.msdtyp.SID sid) {
+        final SidEntry key = new SidEntry(sid.getRevision(), toAuthority(sid.getSidIdentifierAuthority()),
+                toSubAuthorities(sid.getSubAuthorities()), null, null, null);
+        synchronized (INTERN_MAP) {
+            return get(key);
+        }
+    }
+
+    private static SidEntry get(final SidEntry key) {
+        final WeakReference<SidEntry> ref = INTERN_MAP.get(key);
+        return ref != null ? ref.get() : null;
+    }
+
+    private static long toAuthority(final byte[] authority) {
+        long value = 0L;
+        for (final byte b : authority) {
+            value = value << 8 | b & 0xff;
+        }
+        return value;
+    }
+
+    private static int[] toSubAuthorities(final long[] values) {
+        final int[] subAuthorities = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            subAuthorities[i] = (int) values[i];
+        }
+        return subAuthorities;
+    }
+
+    public int getSubAuthorityCount() {
+        return subAuthorities.length;
+    }
+
+    public long getSubAuthority(final int index) {
+        return Integer.toUnsignedLong(subAuthorities[index]);
+    }
+
+    /**
+     * @return the last sub-authority, which is the RID of a domain account, or -1 if there is none
+     */
+    public long getRid() {
+        return subAuthorities.length > 0 ? getSubAuthority(subAuthorities.length - 1) : -1L;
+    }
+
+    public SidType getSidType() {
+        return sidType;
+    }
+
+    public String getAccountName() {
+        return accountName;
+    }
+
+    public String getDomainName() {
+        return domainName;
+    }
+
+    /**
+     * @return the SID in the S-R-I-S... form
+     */
+    public String getSidString() {
+        final StringBuilder buf = new StringBuilder(16 + subAuthorities.length * 11);
+        buf.append("S-").append(revision & 0xff).append('-');
+        if (identifierAuthority < 1L << 32) {
+            buf.append(identifierAuthority);
+        } else {
+            buf.append("0x").append(String.format("%012X", identifierAuthority));
+        }
+        for (final int subAuthority : subAuthorities) {
+            buf.append('-').append(Integer.toUnsignedLong(subAuthority));
+        }
+        return buf.toString();
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof final SidEntry other)) {
+            return false;
+        }
+        return hashCode == other.hashCode && revision == other.revision && identifierAuthority == other.identifierAuthority
+                && Arrays.equals(subAuthorities, other.subAuthorities);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        if (accountName == null) {
+            return getSidString() + ":" + sidType;
+        }
+        return getSidString() + "(" + accountName + "):" + sidType;
+    }
+}
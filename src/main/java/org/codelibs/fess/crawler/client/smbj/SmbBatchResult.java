@@ -0,0 +1,65 @@
+/*
+ * Copyright 2012-2024 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.client.smbj;
+
+import org.codelibs.fess.crawler.entity.ResponseData;
+
+/**
+ * The result of a URL requested by {@link SmbClient#doGet(java.util.List)} or {@link SmbClient#doHead(java.util.List)},
+ * which is either the response data or the exception the single request would have thrown, such as a
+ * {@link org.codelibs.fess.crawler.exception.ChildUrlsException} for a directory.
+ */
+public class SmbBatchResult {
+
+    private final String url;
+
+    private final ResponseData responseData;
+
+    private final RuntimeException exception;
+
+    protected SmbBatchResult(final String url, final ResponseData responseData, final RuntimeException exception) {
+        this.url = url;
+        this.responseData = responseData;
+        this.exception = exception;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * @return the response data, which must be closed by the caller, or null if the request failed
+     */
+    public ResponseData getResponseData() {
+        return responseData;
+    }
+
+    /**
+     * @return the exception thrown by the request, or null
+     */
+    public RuntimeException getException() {
+        return exception;
+    }
+
+    public boolean isSuccess() {
+        return exception == null;
+    }
+
+    @Override
+    public String toString() {
+        return "SmbBatchResult [url=" + url + ", success=" + isSuccess() + "]";
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2012-2024 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.client.smbj;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reuses content buffers, grouped by power-of-two capacity, up to a total number of idle bytes.
+ */
+public class SmbBufferPool {
+
+    private static final int MIN_CAPACITY_SHIFT = 13;
+
+    protected final long maxIdleBytes;
+
+    protected final boolean direct;
+
+    @SuppressWarnings("unchecked")
+    protected final Queue<ByteBuffer>[] queues = new Queue[Integer.SIZE];
+
+    protected final AtomicLong idleBytes = new AtomicLong();
+
+    protected final LongAdder allocatedCount = new LongAdder();
+
+    protected final LongAdder reusedCount = new LongAdder();
+
+    /**
+     * @param maxIdleBytes
+     *            the maximum number of bytes kept in idle buffers
+     * @param direct
+     *            true to allocate direct buffers outside the heap
+     */
+    public SmbBufferPool(final long maxIdleBytes, final boolean direct) {
+        this.maxIdleBytes = maxIdleBytes;
+        this.direct = direct;
+        for (int i = 0; i < queues.length; i++) {
+            queues[i] = new ConcurrentLinkedQueue<>();
+        }
+    }
+
+    /**
+     * @param size the number of bytes needed
+     * @return a cleared buffer whose limit is the size
+     */
+    public ByteBuffer acquire(final int size) {
+        final int shift = getShift(size);
+        final ByteBuffer buffer = queues[shift].poll();
+        if (buffer != null) {
+            idleBytes.addAndGet(-buffer.capacity());
+            reusedCount.increment();
+            buffer.clear().limit(size);
+            return buffer;
+        }
+        allocatedCount.increment();
+        final int capacity = shift >= Integer.SIZE - 1 ? Integer.MAX_VALUE : 1 << shift;
+        final ByteBuffer newBuffer = direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+        newBuffer.limit(size);
+        return newBuffer;
+    }
+
+    /**
+     * Returns the buffer acquired from this pool. The buffer must not be used afterwards.
+     *
+     * @param buffer the buffer
+     */
+    public void release(final ByteBuffer buffer) {
+        if (buffer == null || Integer.bitCount(buffer.capacity()) != 1 || buffer.isDirect() != direct) {
+            return;
+        }
+        if (idleBytes.addAndGet(buffer.capacity()) > maxIdleBytes) {
+            idleBytes.addAndGet(-buffer.capacity());
+            return;
+        }
+        queues[getShift(buffer.capacity())].offer(buffer);
+    }
+
+    protected int getShift(final int size) {
+        if (size <= 1 << MIN_CAPACITY_SHIFT) {
+            return MIN_CAPACITY_SHIFT;
+        }
+        return Integer.SIZE - Integer.numberOfLeadingZeros(size - 1);
+    }
+
+    public long getIdleBytes() {
+        return idleBytes.get();
+    }
+
+    public long getAllocatedCount() {
+        return allocatedCount.sum();
+    }
+
+    public long getReusedCount() {
+        return reusedCount.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "SmbBufferPool [direct=" + direct + ", idleBytes=" + idleBytes + ", allocated=" + allocatedCount + ", reused="
+                + reusedCount + "]";
+    }
+}
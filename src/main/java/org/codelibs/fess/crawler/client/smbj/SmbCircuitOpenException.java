@@ -0,0 +1,31 @@
+/*
+ * Copyright 2012-2024 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.client.smbj;
+
+import org.codelibs.fess.crawler.exception.CrawlingAccessException;
+
+/**
+ * Thrown when a request is rejected because the circuit for the target host is open.
+ */
+public class SmbCircuitOpenException extends CrawlingAccessException {
+
+    private static final long serialVersionUID = 1L;
+
+    public SmbCircuitOpenException(final String message) {
+        super(message);
+    }
+
+}
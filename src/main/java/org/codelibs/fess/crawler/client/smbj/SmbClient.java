@@ -19,27 +19,44 @@ import static com.hierynomus.msdtyp.SID.SidType.SID_TYPE_ALIAS;
 import static com.hierynomus.msdtyp.SID.SidType.SID_TYPE_DOM_GRP;
 import static com.hierynomus.msdtyp.SID.SidType.SID_TYPE_WKN_GRP;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
-import java.io.File;
-import java.io.FileOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ObjLongConsumer;
 
 import javax.annotation.Resource;
 
 import org.apache.commons.pool2.impl.GenericKeyedObjectPool;
 import org.apache.commons.pool2.impl.GenericKeyedObjectPoolConfig;
-import org.codelibs.core.exception.IORuntimeException;
 import org.codelibs.core.io.CloseableUtil;
-import org.codelibs.core.io.FileUtil;
-import org.codelibs.core.io.InputStreamUtil;
 import org.codelibs.core.lang.StringUtil;
 import org.codelibs.core.stream.StreamUtil;
 import org.codelibs.core.timer.TimeoutManager;
@@ -50,7 +67,10 @@ import org.codelibs.fess.crawler.client.AbstractCrawlerClient;
 import org.codelibs.fess.crawler.client.AccessTimeoutTarget;
 import org.codelibs.fess.crawler.client.smb.SmbAuthentication;
 import org.codelibs.fess.crawler.client.smbj.pool.PooledSmbSessionFactory;
+import org.codelibs.fess.crawler.client.smbj.pool.SmbCircuitBreaker;
 import org.codelibs.fess.crawler.client.smbj.pool.SmbSessionKey;
+import org.codelibs.fess.crawler.client.smbj.pool.SmbSessionLease;
+import org.codelibs.fess.crawler.client.smbj.pool.SmbTimeoutPolicy;
 import org.codelibs.fess.crawler.entity.RequestData;
 import org.codelibs.fess.crawler.entity.ResponseData;
 import org.codelibs.fess.crawler.exception.ChildUrlsException;
@@ -63,8 +83,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.hierynomus.msdtyp.SID.SidType;
+import com.hierynomus.msdtyp.SecurityInformation;
 import com.hierynomus.msdtyp.ace.AceType;
+import com.hierynomus.mserref.NtStatus;
+import com.hierynomus.msfscc.FileAttributes;
+import com.hierynomus.msfscc.fileinformation.FileIdBothDirectoryInformation;
 import com.hierynomus.mssmb2.SMB2Dialect;
+import com.hierynomus.mssmb2.SMBApiException;
 import com.hierynomus.smbj.SmbConfig;
 import com.hierynomus.smbj.SmbConfig.Builder;
 
@@ -79,18 +104,165 @@ public class SmbClient extends AbstractCrawlerClient {
 
     public static final String SMB_AUTHENTICATIONS_PROPERTY = "smbAuthentications";
 
+    /** The metadata of the allowed SIDs, whose value is a {@link SidEntry} array. */
     public static final String SMB_ALLOWED_SID_ENTRIES = "smbAllowedSidEntries";
 
+    /** The metadata of the denied SIDs, whose value is a {@link SidEntry} array. */
     public static final String SMB_DENIED_SID_ENTRIES = "smbDeniedSidEntries";
 
     public static final String SMB_CREATE_TIME = "smbCreateTime";
 
     public static final String SMB_OWNER_ATTRIBUTES = "smbOwnerAttributes";
 
+    public static final String SMB_OFFLINE = "smbOffline";
+
+    public static final String SMB_CONTENT_DIGEST = "smbContentDigest";
+
+    public static final String SMB_SNAPSHOT = "smbSnapshot";
+
+    public static final String LISTING_OFFSET_PARAM = "smbjListingOffset";
+
     protected String charset = Constants.UTF_8;
 
     protected boolean resolveSids = true;
 
+    protected int listingPageSize = 0;
+
+    protected int listingCursorCacheSize = 1000;
+
+    protected SmbListingCursorCache listingCursorCache;
+
+    protected boolean excludeHiddenShares = true;
+
+    protected String snapshot;
+
+    /** the snapshot token pinned to each share, or an empty string if the share is crawled live */
+    protected final Map<String, String> snapshotTokenMap = new ConcurrentHashMap<>();
+
+    protected SmbListingFilter listingFilter;
+
+    protected boolean recallOfflineFiles = false;
+
+    protected final LongAdder skippedOfflineFileCount = new LongAdder();
+
+    protected boolean groupSnapshotEnabled = false;
+
+    protected String groupSnapshotDirectory;
+
+    protected int groupSnapshotRefreshInterval = 0;
+
+    protected final Map<SmbSessionKey, SmbGroupSnapshot> groupSnapshotMap = new ConcurrentHashMap<>();
+
+    protected final AtomicBoolean groupSnapshotLoading = new AtomicBoolean(false);
+
+    protected TimeoutTask groupSnapshotTask;
+
+    protected String sidCacheFile;
+
+    protected long sidCacheTtl = 24 * 60 * 60 * 1000L;
+
+    protected SmbSidCache sidCache;
+
+    protected long bufferPoolSize = 64L * 1024 * 1024;
+
+    protected boolean directBuffer = true;
+
+    protected SmbBufferPool bufferPool;
+
+    protected long memoryBudgetSize = 0L;
+
+    protected long memoryBudgetWait = 0L;
+
+    protected SmbMemoryBudget memoryBudget;
+
+    protected String spoolDirectory;
+
+    protected String contentDigestAlgorithm;
+
+    protected int metadataPrefetchThreads = 0;
+
+    protected int metadataPrefetchQueueSize = 10000;
+
+    protected int metadataPrefetchPerHost = 2;
+
+    protected int metadataCacheSize = 10000;
+
+    protected long metadataCacheTtl = 60000L;
+
+    protected SmbMetadataPrefetcher metadataPrefetcher;
+
+    protected int headCacheSize = 0;
+
+    protected long headCacheTtl = 30000L;
+
+    protected SmbMetadataCache headCache;
+
+    protected long contentCacheSize = 0L;
+
+    protected int contentCacheMaxFileSize = 64 * 1024;
+
+    protected long contentCacheTtl = 600000L;
+
+    protected SmbContentCache contentCache;
+
+    protected int spoolReaperQueueSize = 1000;
+
+    protected SmbSpoolManager spoolManager;
+
+    protected boolean collectOwner = true;
+
+    protected boolean collectAcl = true;
+
+    protected int circuitBreakerFailureThreshold = 5;
+
+    protected long circuitBreakerCoolDown = 30000L;
+
+    protected boolean statusProbe = false;
+
+    protected int negativeCacheSize = 0;
+
+    protected long negativeCacheTtl = 600000L;
+
+    protected SmbNegativeCache negativeCache;
+
+    protected final Map<SmbProbeResult.Status, LongAdder> probeStatusCounterMap = new ConcurrentHashMap<>();
+
+    protected long sessionKeepAliveInterval = 0L;
+
+    protected long sessionValidationTimeout = 5000L;
+
+    protected boolean adaptiveTimeout = false;
+
+    protected double adaptiveTimeoutPercentile = 0.99d;
+
+    protected double adaptiveTimeoutFactor = 3.0d;
+
+    protected long adaptiveTimeoutFloor = 1000L;
+
+    protected int adaptiveTimeoutWindowSize = 256;
+
+    protected int adaptiveTimeoutMinSamples = 20;
+
+    protected SmbTimeoutPolicy timeoutPolicy;
+
+    protected int maxRetries = 2;
+
+    protected long retryInitialDelay = 200L;
+
+    protected long retryMaxDelay = 5000L;
+
+    protected SmbRetryPolicy retryPolicy;
+
+    protected String politenessProfiles;
+
+    protected boolean politenessPerShare = false;
+
+    protected SmbPolitenessScheduler politenessScheduler;
+
+    protected int batchThreads = 0;
+
+    protected ThreadPoolExecutor batchExecutor;
+
     @Resource
     protected ContentLengthHelper contentLengthHelper;
 
@@ -108,14 +280,203 @@ public class SmbClient extends AbstractCrawlerClient {
 
         super.init();
 
-        sessionPool = new GenericKeyedObjectPool<>(
-                new PooledSmbSessionFactory(createSmbConfig(),
-                        getInitParameter(SMB_AUTHENTICATIONS_PROPERTY, new SmbAuthentication[0], SmbAuthentication[].class)),
-                createSmbPoolConfig());
+        final SmbAuthentication[] smbAuthentications =
+                getInitParameter(SMB_AUTHENTICATIONS_PROPERTY, new SmbAuthentication[0], SmbAuthentication[].class);
+        final PooledSmbSessionFactory sessionFactory = new PooledSmbSessionFactory(createSmbConfig(), smbAuthentications);
+        sessionFactory.setCircuitBreaker(createCircuitBreaker());
+        timeoutPolicy = createTimeoutPolicy();
+        sessionFactory.setValidationTimeout(sessionValidationTimeout);
+        sessionFactory.setTimeoutPolicy(timeoutPolicy);
+        sessionPool = new GenericKeyedObjectPool<>(sessionFactory, createSmbPoolConfig());
+
+        bufferPool = new SmbBufferPool(bufferPoolSize, directBuffer);
+        if (StringUtil.isNotBlank(spoolDirectory)) {
+            spoolManager = new SmbSpoolManager(Paths.get(spoolDirectory), spoolReaperQueueSize);
+            spoolManager.deleteStaleFiles();
+        } else {
+            spoolManager = new SmbSpoolManager(Paths.get(System.getProperty("java.io.tmpdir")), spoolReaperQueueSize);
+        }
+        if (listingCursorCacheSize > 0) {
+            listingCursorCache = new SmbListingCursorCache(spoolManager.getDirectory(), listingCursorCacheSize);
+            if (StringUtil.isNotBlank(spoolDirectory)) {
+                listingCursorCache.deleteStaleFiles();
+            }
+        }
+        if (StringUtil.isNotBlank(snapshot) && !SmbSnapshots.LATEST.equals(snapshot) && !SmbSnapshots.isToken(snapshot)) {
+            throw new CrawlerSystemException("Invalid snapshot: " + snapshot);
+        }
+        if (StringUtil.isNotBlank(contentDigestAlgorithm)) {
+            // fail fast on an unsupported algorithm
+            createContentDigest();
+        }
+        if (memoryBudgetSize > 0) {
+            memoryBudget = new SmbMemoryBudget(memoryBudgetSize);
+        }
+
+        if (metadataPrefetchThreads > 0) {
+            metadataPrefetcher = new SmbMetadataPrefetcher(new SmbMetadataCache(metadataCacheSize, metadataCacheTtl),
+                    metadataPrefetchThreads, metadataPrefetchQueueSize, metadataPrefetchPerHost);
+        }
+
+        if (negativeCacheSize > 0) {
+            negativeCache = new SmbNegativeCache(negativeCacheSize, negativeCacheTtl);
+        }
+
+        if (headCacheSize > 0) {
+            headCache = new SmbMetadataCache(headCacheSize, headCacheTtl);
+        }
+
+        if (contentCacheSize > 0) {
+            contentCache = new SmbContentCache(contentCacheSize, contentCacheMaxFileSize, contentCacheTtl);
+        }
+
+        if (maxRetries > 0) {
+            retryPolicy = new SmbRetryPolicy(maxRetries, retryInitialDelay, retryMaxDelay);
+        }
+
+        if (StringUtil.isNotBlank(politenessProfiles)) {
+            final List<SmbPolitenessProfile> profileList = SmbPolitenessProfile.parse(politenessProfiles);
+            if (logger.isDebugEnabled()) {
+                logger.debug("politeness profiles: {}, perShare={}", profileList, politenessPerShare);
+            }
+            politenessScheduler = new SmbPolitenessScheduler(profileList, politenessPerShare);
+        }
+
+        if (batchThreads > 0) {
+            final AtomicInteger threadNumber = new AtomicInteger();
+            batchExecutor =
+                    new ThreadPoolExecutor(batchThreads, batchThreads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+                        final Thread thread = new Thread(r, "SmbBatchWorker-" + threadNumber.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        }
+
+        if (StringUtil.isNotBlank(sidCacheFile)) {
+            sidCache = new SmbSidCache(Paths.get(sidCacheFile), sidCacheTtl);
+        }
+
+        if (groupSnapshotEnabled) {
+            loadGroupSnapshots(smbAuthentications, false);
+            if (groupSnapshotRefreshInterval > 0) {
+                groupSnapshotTask = TimeoutManager.getInstance().addTimeoutTarget(() -> {
+                    if (groupSnapshotLoading.compareAndSet(false, true)) {
+                        final Thread thread = new Thread(() -> {
+                            try {
+                                loadGroupSnapshots(smbAuthentications, true);
+                            } finally {
+                                groupSnapshotLoading.set(false);
+                            }
+                        }, "SmbGroupSnapshotLoader");
+                        thread.setDaemon(true);
+                        thread.start();
+                    }
+                }, groupSnapshotRefreshInterval, true);
+            }
+        }
+    }
+
+    /**
+     * Loads the group snapshot of each authenticated server from the export file if it is fresh enough,
+     * or from the server through SAMR.
+     *
+     * @param smbAuthentications the authentications
+     * @param refresh true to ignore the export files
+     */
+    protected void loadGroupSnapshots(final SmbAuthentication[] smbAuthentications, final boolean refresh) {
+        for (final SmbAuthentication auth : smbAuthentications) {
+            if (StringUtil.isBlank(auth.getServer())) {
+                continue;
+            }
+            final SmbSessionKey key = new SmbSessionKey(auth.getServer(), auth.getPort());
+            final Path file = StringUtil.isNotBlank(groupSnapshotDirectory)
+                    ? Paths.get(groupSnapshotDirectory, auth.getServer() + "_" + auth.getPort() + ".snapshot")
+                    : null;
+            if (!refresh && file != null && Files.exists(file)) {
+                try {
+                    final SmbGroupSnapshot snapshot = SmbGroupSnapshot.load(file);
+                    if (groupSnapshotRefreshInterval <= 0
+                            || System.currentTimeMillis() - snapshot.getCreatedTime() < groupSnapshotRefreshInterval * 1000L) {
+                        if (logger.isInfoEnabled()) {
+                            logger.info("Loaded {} for {} from {}", snapshot, key, file);
+                        }
+                        groupSnapshotMap.put(key, snapshot);
+                        continue;
+                    }
+                } catch (final Exception e) {
+                    logger.warn("Failed to load the group snapshot from {}", file, e);
+                }
+            }
+            SmbSession session = null;
+            try {
+                session = sessionPool.borrowObject(key);
+                final SmbGroupSnapshot snapshot = session.loadGroupSnapshot();
+                sessionPool.returnObject(key, session);
+                session = null;
+                if (logger.isInfoEnabled()) {
+                    logger.info("Loaded {} for {}", snapshot, key);
+                }
+                groupSnapshotMap.put(key, snapshot);
+                if (file != null) {
+                    Files.createDirectories(file.getParent());
+                    snapshot.export(file);
+                }
+            } catch (final Exception e) {
+                logger.warn("Failed to load the group snapshot of {}", key, e);
+                if (session != null) {
+                    try {
+                        sessionPool.invalidateObject(key, session);
+                    } catch (final Exception e1) {
+                        if (logger.isDebugEnabled()) {
+                            logger.debug("Failed to invalidate the session for {}", key, e1);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    protected SmbGroupSnapshot getGroupSnapshot(final SmbSessionKey key) {
+        if (groupSnapshotMap.isEmpty()) {
+            return null;
+        }
+        final SmbGroupSnapshot snapshot = groupSnapshotMap.get(key);
+        if (snapshot == null && key.getPort() == -1) {
+            return groupSnapshotMap.get(new SmbSessionKey(key.getHost(), 139));
+        }
+        return snapshot;
+    }
+
+    protected SmbCircuitBreaker createCircuitBreaker() {
+        if (circuitBreakerFailureThreshold <= 0) {
+            return null;
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("circuit breaker: failureThreshold={}, coolDown={}", circuitBreakerFailureThreshold, circuitBreakerCoolDown);
+        }
+        return new SmbCircuitBreaker(circuitBreakerFailureThreshold, circuitBreakerCoolDown);
+    }
+
+    protected SmbTimeoutPolicy createTimeoutPolicy() {
+        if (!adaptiveTimeout) {
+            return null;
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("adaptive timeout: percentile={}, factor={}, floor={}, windowSize={}, minSamples={}", adaptiveTimeoutPercentile,
+                    adaptiveTimeoutFactor, adaptiveTimeoutFloor, adaptiveTimeoutWindowSize, adaptiveTimeoutMinSamples);
+        }
+        return new SmbTimeoutPolicy(adaptiveTimeoutPercentile, adaptiveTimeoutFactor, adaptiveTimeoutFloor, adaptiveTimeoutWindowSize,
+                adaptiveTimeoutMinSamples);
     }
 
     protected GenericKeyedObjectPoolConfig<SmbSession> createSmbPoolConfig() {
         final GenericKeyedObjectPoolConfig<SmbSession> poolConfig = new GenericKeyedObjectPoolConfig<>();
+        if (sessionKeepAliveInterval > 0) {
+            // idle sessions are validated with ECHO by the evictor, which keeps them alive and evicts dead ones
+            poolConfig.setTestWhileIdle(true);
+            poolConfig.setTimeBetweenEvictionRuns(Duration.ofMillis(sessionKeepAliveInterval));
+            poolConfig.setNumTestsPerEvictionRun(-1);
+        }
         final String prefix = "smbj.pool.";
         System.getProperties().entrySet().stream().filter(e -> e.getKey().toString().startsWith(prefix)).forEach(e -> {
             final String key = e.getKey().toString().substring(prefix.length());
@@ -273,9 +634,27 @@ public class SmbClient extends AbstractCrawlerClient {
 
     @Override
     public void close() throws Exception {
+        if (groupSnapshotTask != null) {
+            groupSnapshotTask.cancel();
+        }
+        if (metadataPrefetcher != null) {
+            metadataPrefetcher.close();
+        }
+        if (batchExecutor != null) {
+            batchExecutor.shutdownNow();
+        }
         if (sessionPool != null) {
             sessionPool.close();
         }
+        if (sidCache != null) {
+            sidCache.close();
+        }
+        if (listingCursorCache != null) {
+            listingCursorCache.close();
+        }
+        if (spoolManager != null) {
+            spoolManager.close();
+        }
     }
 
     /*
@@ -319,16 +698,31 @@ public class SmbClient extends AbstractCrawlerClient {
     }
 
     protected ResponseData getResponseData(final String uri, final boolean includeContent) {
-        final ResponseData responseData = new ResponseData();
+        final SmbResponseData responseData = new SmbResponseData();
         responseData.setMethod(Constants.GET_METHOD);
         final String filePath = preprocessUri(uri);
         responseData.setUrl(filePath);
 
+        if (negativeCache != null) {
+            final int statusCode = negativeCache.getStatusCode(filePath);
+            if (statusCode > 0) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Skipping {} known to be inaccessible: {}", filePath, statusCode);
+                }
+                responseData.setHttpStatusCode(statusCode);
+                responseData.setCharSet(charset);
+                responseData.setContentLength(0);
+                return responseData;
+            }
+        }
+
         if (logger.isDebugEnabled()) {
             logger.debug("Creating SmbFile: {}", filePath);
         }
 
-        final SmbFile file = new SmbFile(filePath, sessionPool);
+        final SmbFile file = createSmbFile(filePath);
+        final SmbMetadataCache.Entry headEntry = getHeadEntry(file, includeContent);
+        final SmbProbeResult probeResult = headEntry == null ? probe(file) : null;
 
         if (logger.isDebugEnabled()) {
             logger.debug("Processing SmbFile: {}", filePath);
@@ -345,23 +739,44 @@ public class SmbClient extends AbstractCrawlerClient {
                 responseData.setCharSet(geCharSet(file));
                 responseData.setLastModified(new Date(file.lastModified()));
                 responseData.addMetaData(SMB_CREATE_TIME, new Date(file.createTime()));
-                try {
+                if (file.getSnapshotToken() != null) {
+                    responseData.addMetaData(SMB_SNAPSHOT, file.getSnapshotToken());
+                }
+                if (headEntry != null && headEntry.getMetaData() != null) {
                     if (logger.isDebugEnabled()) {
-                        logger.debug("Parsing SmbFile Owner: {}", filePath);
+                        logger.debug("Reusing metadata of HEAD request: {}", filePath);
+                    }
+                    headEntry.getMetaData().forEach(responseData::addMetaData);
+                } else {
+                    if (collectOwner) {
+                        try {
+                            if (logger.isDebugEnabled()) {
+                                logger.debug("Parsing SmbFile Owner: {}", filePath);
+                            }
+                            final SID ownerUser = file.getOwnerUser();
+                            if (ownerUser != null) {
+                                final String[] ownerAttributes = { ownerUser.getAccountName() };
+                                responseData.addMetaData(SMB_OWNER_ATTRIBUTES, ownerAttributes);
+                            }
+                        } catch (final Exception e) {
+                            throw new CrawlingAccessException("Cannot get owner of the file: " + filePath, e);
+                        }
                     }
-                    final SID ownerUser = file.getOwnerUser();
-                    if (ownerUser != null) {
-                        final String[] ownerAttributes = { ownerUser.getAccountName() };
-                        responseData.addMetaData(SMB_OWNER_ATTRIBUTES, ownerAttributes);
+
+                    if (collectAcl) {
+                        if (logger.isDebugEnabled()) {
+                            logger.debug("Parsing SmbFile ACL: {}", filePath);
+                        }
+                        processAccessControlEntries(responseData, file);
                     }
-                } catch (final Exception e) {
-                    throw new CrawlingAccessException("Cannot get owner of the file: " + filePath, e);
                 }
-
-                if (logger.isDebugEnabled()) {
-                    logger.debug("Parsing SmbFile ACL: {}", filePath);
+                if (!includeContent && headCache != null) {
+                    final SmbMetadataCache.Entry entry = file.getFileInfoEntry();
+                    if (entry != null) {
+                        entry.setMetaData(new HashMap<>(responseData.getMetaDataMap()));
+                        headCache.put(file.toString(), entry);
+                    }
                 }
-                processAccessControlEntries(responseData, file);
                 // final Map<String, List<String>> headerFieldMap = file.getHeaderFields();
                 // if (headerFieldMap != null) {
                 //     for (final Map.Entry<String, List<String>> entry : headerFieldMap.entrySet()) {
@@ -371,29 +786,63 @@ public class SmbClient extends AbstractCrawlerClient {
 
                 if (file.canRead()) {
                     final MimeTypeHelper mimeTypeHelper = crawlerContainer.getComponent("mimeTypeHelper");
-                    if (includeContent) {
+                    if (file.isContentSkipped()) {
+                        if (logger.isDebugEnabled()) {
+                            logger.debug("Skipping content of offline file: {}", filePath);
+                        }
+                        skippedOfflineFileCount.increment();
+                        responseData.addMetaData(SMB_OFFLINE, Boolean.TRUE);
+                        if (includeContent) {
+                            responseData.setResponseBody(new byte[0]);
+                        }
+                        responseData.setMimeType(mimeTypeHelper.getContentType(null, file.getName()));
+                    } else if (includeContent) {
                         if (logger.isDebugEnabled()) {
                             logger.debug("Parsing SmbFile Content: {}", filePath);
                         }
-                        if (file.getContentLengthLong() < maxCachedContentSize) {
-                            try (InputStream contentStream = new BufferedInputStream(new SmbFileInputStream(file, maxCachedContentSize))) {
-                                responseData.setResponseBody(InputStreamUtil.getBytes(contentStream));
+                        final long contentLength = file.getContentLengthLong();
+                        final MessageDigest digest = createContentDigest();
+                        final byte[] cachedContent = getCachedContent(file, contentLength);
+                        if (cachedContent != null) {
+                            if (logger.isDebugEnabled()) {
+                                logger.debug("Reusing cached content: {}", filePath);
+                            }
+                            responseData.setResponseBody(cachedContent);
+                            if (digest != null) {
+                                digest.update(cachedContent);
+                            }
+                        } else if (contentLength < maxCachedContentSize && reserveMemory(contentLength)) {
+                            try {
+                                final ByteBuffer buffer = file.read(bufferPool, (int) contentLength, digest);
+                                cacheContent(file, buffer);
+                                responseData.setResponseBody(buffer, bufferPool);
+                                if (memoryBudget != null) {
+                                    responseData.setMemoryReservation(memoryBudget, contentLength);
+                                }
                             } catch (final Exception e) {
+                                if (memoryBudget != null) {
+                                    memoryBudget.release(contentLength);
+                                }
                                 logger.warn("I/O Exception.", e);
                                 responseData.setHttpStatusCode(Constants.SERVER_ERROR_STATUS_CODE);
                             }
                         } else {
-                            File outputFile = null;
+                            Path spoolFile = null;
                             try {
-                                outputFile = File.createTempFile("crawler-SmbClient-", ".out");
-                                copy(file, outputFile);
-                                responseData.setResponseBody(outputFile, true);
+                                spoolFile = spoolManager.createFile();
+                                final long startTime = System.nanoTime();
+                                file.copyTo(spoolFile, bufferPool, digest);
+                                spoolManager.recordSpill(spoolFile, System.nanoTime() - startTime);
+                                responseData.setResponseBody(spoolFile, spoolManager);
                             } catch (final Exception e) {
                                 logger.warn("I/O Exception.", e);
                                 responseData.setHttpStatusCode(Constants.SERVER_ERROR_STATUS_CODE);
-                                FileUtil.deleteInBackground(outputFile);
+                                spoolManager.release(spoolFile);
                             }
                         }
+                        if (digest != null && responseData.hasResponseBody()) {
+                            responseData.addMetaData(SMB_CONTENT_DIGEST, HexFormat.of().formatHex(digest.digest()));
+                        }
                         if (logger.isDebugEnabled()) {
                             logger.debug("Parsing SmbFile MIME Type: {}", filePath);
                         }
@@ -406,7 +855,7 @@ public class SmbClient extends AbstractCrawlerClient {
                         if (logger.isDebugEnabled()) {
                             logger.debug("Parsing SmbFile MIME Type: {}", filePath);
                         }
-                        try (final InputStream is = new SmbFileInputStream(file, maxCachedContentSize)) {
+                        try (final InputStream is = openDetectionStream(file)) {
                             responseData.setMimeType(mimeTypeHelper.getContentType(is, file.getName()));
                         } catch (final Exception e) {
                             responseData.setMimeType(mimeTypeHelper.getContentType(null, file.getName()));
@@ -430,19 +879,54 @@ public class SmbClient extends AbstractCrawlerClient {
                 }
                 final Set<RequestData> requestDataSet = new HashSet<>(100);
                 if (includeContent) {
-                    final SmbFile[] files = file.listFiles();
-                    if (files != null) {
-                        for (final SmbFile f : files) {
-                            final String chileUri = f.toString();
-                            requestDataSet.add(RequestDataBuilder.newRequestData().get().url(chileUri).build());
+                    final long offset = getListingOffset(filePath);
+                    final ObjLongConsumer<SmbFilePath> childConsumer = (childPath, attributes) -> {
+                        requestDataSet.add(RequestDataBuilder.newRequestData().get().url(childPath.toString()).build());
+                        if (metadataPrefetcher != null && (attributes & FileAttributes.FILE_ATTRIBUTE_DIRECTORY.getValue()) == 0) {
+                            final SmbFile child = file.createChild(childPath);
+                            child.setMetadataCache(null);
+                            metadataPrefetcher.prefetch(child);
+                        }
+                    };
+                    final SmbListingCursorCache.Cursor cursor =
+                            offset > 0 && listingCursorCache != null ? listingCursorCache.take(filePath) : null;
+                    if (cursor != null) {
+                        if (logger.isDebugEnabled()) {
+                            logger.debug("Reading the page of {} from the cursor", filePath);
+                        }
+                        final boolean hasMore;
+                        try {
+                            hasMore = cursor.read(listingPageSize,
+                                    (name, attributes) -> childConsumer.accept(file.getFilePath().resolve(name), attributes));
+                        } catch (final RuntimeException e) {
+                            cursor.close();
+                            throw e;
+                        }
+                        if (hasMore) {
+                            final String nextUri = getNextListingUri(file, offset);
+                            listingCursorCache.put(nextUri, cursor);
+                            requestDataSet.add(RequestDataBuilder.newRequestData().get().url(nextUri).build());
+                        } else {
+                            cursor.close();
                         }
+                    } else {
+                        listChildren(file, filePath, offset, requestDataSet, childConsumer);
                     }
                 }
                 throw new ChildUrlsException(requestDataSet, this.getClass().getName() + "#getResponseData");
             } else {
-                responseData.setHttpStatusCode(Constants.NOT_FOUND_STATUS_CODE);
+                responseData.setHttpStatusCode(probeResult != null && probeResult.getStatus() != SmbProbeResult.Status.UNKNOWN
+                        ? probeResult.getStatus().getStatusCode()
+                        : Constants.NOT_FOUND_STATUS_CODE);
                 responseData.setCharSet(charset);
                 responseData.setContentLength(0);
+                if (negativeCache != null) {
+                    final SmbProbeResult result = probeResult != null ? probeResult : file.getExistsResult();
+                    if (result.getStatus() == SmbProbeResult.Status.NOT_FOUND
+                            || result.getStatus() == SmbProbeResult.Status.ACCESS_DENIED) {
+                        negativeCache.put(filePath, responseData.getHttpStatusCode(), false);
+                    }
+                }
             }
         } catch (final CrawlerSystemException e) {
             CloseableUtil.closeQuietly(responseData);
@@ -455,77 +939,400 @@ public class SmbClient extends AbstractCrawlerClient {
         return responseData;
     }
 
-    protected void processAccessControlEntries(final ResponseData responseData, final SmbFile file) {
-        try {
-            final ACE[] aces = file.getSecurity(resolveSids);
-            if (logger.isDebugEnabled()) {
-                logger.debug("ACEs: {} -> {}", file, Arrays.toString(aces));
-            }
-            if (aces != null) {
-                final Set<SID> sidAllowSet = new HashSet<>();
-                final Set<SID> sidDenySet = new HashSet<>();
-                for (final ACE ace : aces) {
-                    if (logger.isDebugEnabled()) {
-                        logger.debug("ACE:{}", ace);
-                    }
-                    final SID sid = ace.getSid();
-                    Set<SID> sidSet = null;
-                    final AceType aceType = ace.getAceHeader().getAceType();
-                    if (aceType == AceType.ACCESS_ALLOWED_ACE_TYPE) {
-                        sidSet = sidAllowSet;
-                    } else if (aceType == AceType.ACCESS_DENIED_ACE_TYPE) {
-                        sidSet = sidDenySet;
-                    }
-                    if (sidSet != null) {
-                        processAllowedOrDeniedSIDs(file, sid, sidSet);
-                    } else if (logger.isDebugEnabled()) {
-                        logger.debug("[{}] Unknown aceType:{}", sid, aceType);
-                    }
-                }
-                responseData.addMetaData(SMB_ALLOWED_SID_ENTRIES, sidAllowSet.toArray(new SID[sidAllowSet.size()]));
-                responseData.addMetaData(SMB_DENIED_SID_ENTRIES, sidDenySet.toArray(new SID[sidDenySet.size()]));
-            }
-        } catch (final Exception e) {
-            throw new CrawlingAccessException("Could not access " + file, e);
+    /**
+     * Classifies the path with a single request if statusProbe is enabled.
+     *
+     * @param file the file
+     * @return the result, or null if probing is disabled
+     */
+    protected SmbProbeResult probe(final SmbFile file) {
+        if (!statusProbe) {
+            return null;
         }
+        final SmbProbeResult result = file.probe();
+        probeStatusCounterMap.computeIfAbsent(result.getStatus(), k -> new LongAdder()).increment();
+        return result;
     }
 
-    protected void processAllowedOrDeniedSIDs(final SmbFile file, final SID sid, final Set<SID> sidSet) {
-        if (logger.isDebugEnabled()) {
-            logger.debug("SID:{}", sid);
+    /**
+     * Takes the information cached by a HEAD request for the file and uses it if the file has not changed.
+     *
+     * @param file the file
+     * @param includeContent true if the request is GET
+     * @return the entry used by the file, or null
+     */
+    protected SmbMetadataCache.Entry getHeadEntry(final SmbFile file, final boolean includeContent) {
+        if (!includeContent || headCache == null) {
+            return null;
         }
-        final SidType type = sid.getSidType();
-        sidSet.add(sid);
-        if (type == SID_TYPE_DOM_GRP || type == SID_TYPE_WKN_GRP || type == SID_TYPE_ALIAS) {
-            try {
-                final SID[] children = sid.getGroupMemberSids();
-                if (logger.isDebugEnabled()) {
-                    logger.debug("Child SID: {} -> {}", sid, Arrays.toString(children));
-                }
-                for (final SID child : children) {
-                    if (!sidSet.contains(child)) {
-                        processAllowedOrDeniedSIDs(file, child, sidSet);
-                    }
-                }
-            } catch (final Exception e) {
-                if (logger.isDebugEnabled()) {
-                    logger.debug("Exception on SID processing.", e);
-                }
-            }
+        final SmbMetadataCache.Entry entry = headCache.take(file.toString());
+        if (entry != null && file.loadValidatedFileInfo(entry)) {
+            return entry;
         }
+        return null;
     }
 
-    protected String preprocessUri(final String uri) {
-        if (StringUtil.isEmpty(uri)) {
-            throw new CrawlerSystemException("The uri is empty.");
+    /**
+     * @param file the file whose information is loaded
+     * @param contentLength the size of the file
+     * @return the content read by an earlier request if the file has not changed since, or null
+     */
+    protected byte[] getCachedContent(final SmbFile file, final long contentLength) {
+        if (contentCache == null || !contentCache.accepts(contentLength)) {
+            return null;
         }
-
-        return uri;
+        return contentCache.get(file.toString(), file.getBasicInformation(), contentLength);
     }
 
-    protected String geCharSet(final SmbFile file) {
-        return charset;
-    }
+    /**
+     * @param file the file
+     * @param buffer the content read from the file, from its position to its limit
+     */
+    protected void cacheContent(final SmbFile file, final ByteBuffer buffer) {
+        if (contentCache == null || !contentCache.accepts(buffer.remaining())) {
+            return;
+        }
+        final byte[] content = new byte[buffer.remaining()];
+        buffer.duplicate().get(content);
+        contentCache.put(file.toString(), file.getBasicInformation(), content);
+    }
+
+    /**
+     * Opens the content for the MIME type detection of a HEAD request. Small content is kept in the content cache,
+     * so that the GET request for the file does not read it again.
+     *
+     * @param file the file
+     * @return the stream of the content
+     * @throws IOException if the content cannot be read
+     */
+    protected InputStream openDetectionStream(final SmbFile file) throws IOException {
+        final long contentLength = file.getContentLengthLong();
+        if (contentCache == null || !contentCache.accepts(contentLength)) {
+            return new SmbFileInputStream(file, maxCachedContentSize);
+        }
+        byte[] content = getCachedContent(file, contentLength);
+        if (content == null) {
+            try (InputStream in = new SmbFileInputStream(file, maxCachedContentSize)) {
+                content = in.readAllBytes();
+            }
+            contentCache.put(file.toString(), file.getBasicInformation(), content);
+        }
+        return new ByteArrayInputStream(content);
+    }
+
+    /**
+     * @return a new digest of contentDigestAlgorithm, or null if content digests are disabled
+     */
+    protected MessageDigest createContentDigest() {
+        if (StringUtil.isBlank(contentDigestAlgorithm)) {
+            return null;
+        }
+        try {
+            return MessageDigest.getInstance(contentDigestAlgorithm);
+        } catch (final NoSuchAlgorithmException e) {
+            throw new CrawlerSystemException("Unsupported digest algorithm: " + contentDigestAlgorithm, e);
+        }
+    }
+
+    /**
+     * Reserves memory for content read into memory, waiting up to memoryBudgetWait.
+     *
+     * @param bytes the content length
+     * @return true if the content can be held in memory, false if it is spilled to disk
+     */
+    protected boolean reserveMemory(final long bytes) {
+        if (memoryBudget == null) {
+            return true;
+        }
+        if (memoryBudget.reserve(bytes, memoryBudgetWait)) {
+            return true;
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("Spilling {} bytes to disk: {}", bytes, memoryBudget);
+        }
+        memoryBudget.recordSpill();
+        return false;
+    }
+
+    /**
+     * Walks the directory from the offset and adds the children of the page to the set. SMB2 QUERY_DIRECTORY cannot
+     * resume from an entry, so the walk does not stop at the end of the page but saves the remaining children in a
+     * cursor, from which the following pages are read. Only a page whose cursor is evicted walks the directory again.
+     */
+    protected void listChildren(final SmbFile file, final String filePath, final long offset, final Set<RequestData> requestDataSet,
+            final ObjLongConsumer<SmbFilePath> childConsumer) {
+        final SmbListingCursorCache.Writer writer =
+                listingPageSize > 0 && listingCursorCache != null ? listingCursorCache.createWriter() : null;
+        final boolean hasMore;
+        try {
+            hasMore = file.listChildPaths(offset, listingPageSize,
+                    (childPath, info) -> childConsumer.accept(childPath, getFileAttributes(info)),
+                    writer == null ? null : (name, info) -> writer.add(name, getFileAttributes(info)));
+        } catch (final CrawlingAccessException e) {
+            if (writer != null) {
+                writer.discard();
+            }
+            if (negativeCache != null && e.getCause() instanceof final SMBApiException apiException
+                    && apiException.getStatus() == NtStatus.STATUS_ACCESS_DENIED) {
+                // the whole subtree of a denied directory is inaccessible
+                negativeCache.put(filePath, Constants.FORBIDDEN_STATUS_CODE, true);
+            }
+            throw e;
+        } catch (final RuntimeException e) {
+            if (writer != null) {
+                writer.discard();
+            }
+            throw e;
+        }
+        if (hasMore) {
+            final String nextUri = getNextListingUri(file, offset);
+            if (writer != null) {
+                final SmbListingCursorCache.Cursor cursor = writer.toCursor();
+                if (cursor != null) {
+                    listingCursorCache.put(nextUri, cursor);
+                }
+            }
+            requestDataSet.add(RequestDataBuilder.newRequestData().get().url(nextUri).build());
+        } else if (writer != null) {
+            writer.discard();
+        }
+    }
+
+    protected static long getFileAttributes(final FileIdBothDirectoryInformation info) {
+        // the shares of a server root have no directory entry
+        return info != null ? info.getFileAttributes() : FileAttributes.FILE_ATTRIBUTE_DIRECTORY.getValue();
+    }
+
+    protected String getNextListingUri(final SmbFile file, final long offset) {
+        final String nextUri = file.toString() + "?" + LISTING_OFFSET_PARAM + "=" + (offset + listingPageSize);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Next page of {}: {}", file, nextUri);
+        }
+        return nextUri;
+    }
+
+    protected long getListingOffset(final String uri) {
+        final int pos = uri.indexOf('?');
+        if (pos == -1) {
+            return 0L;
+        }
+        for (final String param : uri.substring(pos + 1).split("&")) {
+            if (param.startsWith(LISTING_OFFSET_PARAM + "=")) {
+                try {
+                    return Long.parseLong(param.substring(LISTING_OFFSET_PARAM.length() + 1));
+                } catch (final NumberFormatException e) {
+                    logger.warn("Invalid listing offset: {}", uri);
+                }
+            }
+        }
+        return 0L;
+    }
+
+    protected SmbFile createSmbFile(final String filePath) {
+        final SmbFile file = new SmbFile(filePath, sessionPool);
+        file.setRetryPolicy(retryPolicy);
+        file.setPolitenessScheduler(politenessScheduler);
+        file.setSecurityInformation(getSecurityInformation());
+        file.setListingFilter(listingFilter);
+        file.setRecallOfflineFiles(recallOfflineFiles);
+        file.setExcludeHiddenShares(excludeHiddenShares);
+        if (StringUtil.isNotBlank(snapshot) && !file.getFilePath().isServerRoot()) {
+            final String snapshotToken = getSnapshotToken(file);
+            if (!snapshotToken.isEmpty()) {
+                file.setSnapshotToken(snapshotToken);
+            }
+        }
+        file.setMemoryBudget(memoryBudget);
+        file.setSpoolDirectory(spoolManager.getDirectory().toFile());
+        file.setSpoolManager(spoolManager);
+        file.setTimeoutPolicy(timeoutPolicy);
+        if (metadataPrefetcher != null) {
+            file.setMetadataCache(metadataPrefetcher.getCache());
+        }
+        if (accessTimeout != null) {
+            file.setDeadline(System.currentTimeMillis() + accessTimeout.longValue() * 1000L);
+        }
+        return file;
+    }
+
+    /**
+     * Resolves the snapshot of the share of the file once, so that all files of the share are read from the same snapshot
+     * during the crawl.
+     *
+     * @param file the file
+     * @return the snapshot token, or an empty string if the share has no snapshot to read
+     */
+    protected String getSnapshotToken(final SmbFile file) {
+        final String key = file.getSessionKey() + "/" + file.getFilePath().getShareName();
+        final String snapshotToken = snapshotTokenMap.get(key);
+        if (snapshotToken != null) {
+            return snapshotToken;
+        }
+        String value = StringUtil.EMPTY;
+        if (SmbSnapshots.LATEST.equals(snapshot)) {
+            try {
+                final String latest = SmbSnapshots.getLatest(file.listSnapshots());
+                if (latest != null) {
+                    value = latest;
+                } else {
+                    logger.warn("No snapshot of {} is available, so the share is crawled live.", key);
+                }
+            } catch (final CrawlingAccessException e) {
+                logger.warn("Failed to get snapshots of {}, so the share is crawled live.", key, e);
+            }
+        } else {
+            value = snapshot;
+        }
+        final String previous = snapshotTokenMap.putIfAbsent(key, value);
+        if (previous != null) {
+            return previous;
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("Pinned {} to snapshot {}", key, value);
+        }
+        return value;
+    }
+
+    protected Set<SecurityInformation> getSecurityInformation() {
+        final Set<SecurityInformation> securityInformation = EnumSet.noneOf(SecurityInformation.class);
+        if (collectOwner) {
+            securityInformation.add(SecurityInformation.OWNER_SECURITY_INFORMATION);
+        }
+        if (collectAcl) {
+            securityInformation.add(SecurityInformation.DACL_SECURITY_INFORMATION);
+        }
+        return securityInformation;
+    }
+
+    protected void processAccessControlEntries(final ResponseData responseData, final SmbFile file) {
+        try {
+            final ACE[] aces = file.getSecurity(resolveSids);
+            if (logger.isDebugEnabled()) {
+                logger.debug("ACEs: {} -> {}", file, Arrays.toString(aces));
+            }
+            if (aces != null) {
+                final Set<SID> sidAllowSet = new HashSet<>();
+                final Set<SID> sidDenySet = new HashSet<>();
+                for (final ACE ace : aces) {
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("ACE:{}", ace);
+                    }
+                    final SID sid = ace.getSid();
+                    Set<SID> sidSet = null;
+                    final AceType aceType = ace.getAceHeader().getAceType();
+                    if (aceType == AceType.ACCESS_ALLOWED_ACE_TYPE) {
+                        sidSet = sidAllowSet;
+                    } else if (aceType == AceType.ACCESS_DENIED_ACE_TYPE) {
+                        sidSet = sidDenySet;
+                    }
+                    if (sidSet != null) {
+                        processAllowedOrDeniedSIDs(file, sid, sidSet);
+                    } else if (logger.isDebugEnabled()) {
+                        logger.debug("[{}] Unknown aceType:{}", sid, aceType);
+                    }
+                }
+                responseData.addMetaData(SMB_ALLOWED_SID_ENTRIES, sidAllowSet.stream().map(this::toSidEntry).toArray(n -> new SidEntry[n]));
+                responseData.addMetaData(SMB_DENIED_SID_ENTRIES, sidDenySet.stream().map(this::toSidEntry).toArray(n -> new SidEntry[n]));
+            }
+        } catch (final Exception e) {
+            throw new CrawlingAccessException("Could not access " + file, e);
+        }
+    }
+
+    protected SID[] getGroupMemberSids(final SID sid) {
+        if (sidCache == null) {
+            return sid.getGroupMemberSids();
+        }
+        final String[] members = sidCache.getMembers(sid.getSidString());
+        if (members != null) {
+            final SID[] memberSids = new SID[members.length];
+            for (int i = 0; i < members.length; i++) {
+                memberSids[i] = new SID(com.hierynomus.msdtyp.SID.fromString(members[i]), sid.sessionLoader);
+            }
+            return memberSids;
+        }
+        final SID[] memberSids = sid.getGroupMemberSids();
+        sidCache.putMembers(sid.getSidString(), Arrays.stream(memberSids).map(SID::getSidString).toArray(n -> new String[n]));
+        return memberSids;
+    }
+
+    /**
+     * Converts the SID to the interned entry put in the metadata, resolving its names if resolveSids is enabled.
+     *
+     * @param sid the SID
+     * @return the entry
+     */
+    protected SidEntry toSidEntry(final SID sid) {
+        final SidEntry entry = SidEntry.find(sid);
+        if (entry != null && (!resolveSids || entry.getAccountName() != null)) {
+            return entry;
+        }
+        if (!resolveSids) {
+            return SidEntry.of(sid, sid.getSidType(), null, null);
+        }
+        if (sidCache != null) {
+            final String[] names = sidCache.getNames(sid.getSidString());
+            if (names != null) {
+                return SidEntry.of(sid, sid.getSidType(), names[0], names[1]);
+            }
+        }
+        final String accountName = sid.getAccountName();
+        if (sidCache != null && accountName != null) {
+            sidCache.putNames(sid.getSidString(), accountName, sid.getDomainName());
+        }
+        return SidEntry.of(sid, sid.getSidType(), accountName, sid.getDomainName());
+    }
+
+    protected void processAllowedOrDeniedSIDs(final SmbFile file, final SID sid, final Set<SID> sidSet) {
+        if (logger.isDebugEnabled()) {
+            logger.debug("SID:{}", sid);
+        }
+        sidSet.add(sid);
+        final SmbGroupSnapshot snapshot = getGroupSnapshot(file.getSessionKey());
+        if (snapshot != null) {
+            final String sidString = sid.getSidString();
+            final String[] members = snapshot.getMembers(sidString);
+            if (members != null) {
+                for (final String member : members) {
+                    sidSet.add(new SID(com.hierynomus.msdtyp.SID.fromString(member), sid.sessionLoader));
+                }
+                return;
+            }
+            if (snapshot.containsDomainOf(sidString)) {
+                return;
+            }
+        }
+        final SidType type = sid.getSidType();
+        if (type == SID_TYPE_DOM_GRP || type == SID_TYPE_WKN_GRP || type == SID_TYPE_ALIAS) {
+            try {
+                final SID[] children = getGroupMemberSids(sid);
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Child SID: {} -> {}", sid, Arrays.toString(children));
+                }
+                for (final SID child : children) {
+                    if (!sidSet.contains(child)) {
+                        processAllowedOrDeniedSIDs(file, child, sidSet);
+                    }
+                }
+            } catch (final Exception e) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Exception on SID processing.", e);
+                }
+            }
+        }
+    }
+
+    protected String preprocessUri(final String uri) {
+        if (StringUtil.isEmpty(uri)) {
+            throw new CrawlerSystemException("The uri is empty.");
+        }
+
+        return uri;
+    }
+
+    protected String geCharSet(final SmbFile file) {
+        return charset;
+    }
 
     /*
      * (non-Javadoc)
@@ -543,20 +1350,128 @@ public class SmbClient extends AbstractCrawlerClient {
         }
     }
 
-    private void copy(final SmbFile src, final File dest) {
-        if (dest.exists() && !dest.canWrite()) {
-            return;
+    /**
+     * Requests the URLs like {@link #doGet(String)}, grouped by host and share. The requests of a group run on one
+     * session and tree connect leased by a thread, and groups run in parallel on up to batchThreads threads. A
+     * failure of a request or of its group is returned as the exception of the result, and if the batch is
+     * interrupted, the response data of the finished requests is closed before the exception is thrown.
+     *
+     * @param urls the URLs
+     * @return the results in the order of the URLs
+     */
+    public List<SmbBatchResult> doGet(final List<String> urls) {
+        return processBatch(urls, true);
+    }
+
+    /**
+     * Requests the URLs like {@link #doHead(String)}, grouped like {@link #doGet(List)}.
+     *
+     * @param urls the URLs
+     * @return the results in the order of the URLs, whose response data is null for directories
+     */
+    public List<SmbBatchResult> doHead(final List<String> urls) {
+        return processBatch(urls, false);
+    }
+
+    protected List<SmbBatchResult> processBatch(final List<String> urls, final boolean includeContent) {
+        if (sessionPool == null) {
+            init();
+        }
+
+        final SmbBatchResult[] results = new SmbBatchResult[urls.size()];
+        final Map<String, List<Integer>> groupMap = new LinkedHashMap<>();
+        final Map<String, SmbSessionKey> sessionKeyMap = new HashMap<>();
+        for (int i = 0; i < urls.size(); i++) {
+            final String url = urls.get(i);
+            try {
+                final SmbFilePath filePath = SmbFilePath.parse(preprocessUri(url));
+                final String groupKey = filePath.getSessionKey() + "/" + filePath.getShareName();
+                groupMap.computeIfAbsent(groupKey, k -> new ArrayList<>()).add(i);
+                sessionKeyMap.putIfAbsent(groupKey, filePath.getSessionKey());
+            } catch (final RuntimeException e) {
+                results[i] = new SmbBatchResult(url, null, e);
+            }
+        }
+
+        final AtomicBoolean aborted = new AtomicBoolean();
+        final List<Runnable> tasks = new ArrayList<>(groupMap.size());
+        groupMap.forEach((groupKey, indexes) -> tasks.add(() -> {
+            try (SmbSessionLease lease = SmbSessionLease.open(sessionKeyMap.get(groupKey), sessionPool)) {
+                for (final int index : indexes) {
+                    setBatchResult(results, index, processBatchRequest(urls.get(index), includeContent), aborted);
+                }
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Processed {} requests for {}: {}", indexes.size(), groupKey, lease);
+                }
+            } catch (final RuntimeException e) {
+                // such as a failure to return the session, which fails the requests without a result
+                for (final int index : indexes) {
+                    synchronized (results) {
+                        if (results[index] == null) {
+                            results[index] = new SmbBatchResult(urls.get(index), null, e);
+                        }
+                    }
+                }
+            }
+        }));
+        if (batchExecutor == null || tasks.size() <= 1) {
+            tasks.forEach(Runnable::run);
+        } else {
+            final List<Future<?>> futures = new ArrayList<>(tasks.size());
+            try {
+                for (final Runnable task : tasks) {
+                    futures.add(batchExecutor.submit(task));
+                }
+                for (final Future<?> future : futures) {
+                    future.get();
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.forEach(f -> f.cancel(true));
+                abortBatch(results, aborted);
+                throw new CrawlingAccessException("Interrupted while processing " + urls.size() + " requests.", e);
+            } catch (final ExecutionException e) {
+                futures.forEach(f -> f.cancel(true));
+                abortBatch(results, aborted);
+                throw new CrawlingAccessException("Failed to process " + urls.size() + " requests.", e.getCause());
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Stores the result of a batch request, or closes its response data if the batch is aborted.
+     */
+    protected void setBatchResult(final SmbBatchResult[] results, final int index, final SmbBatchResult result,
+            final AtomicBoolean aborted) {
+        synchronized (results) {
+            if (!aborted.get()) {
+                results[index] = result;
+                return;
+            }
         }
-        try (BufferedInputStream in = new BufferedInputStream(new SmbFileInputStream(src, maxCachedContentSize));
-                BufferedOutputStream out = new BufferedOutputStream(new FileOutputStream(dest))) {
-            final byte[] buf = new byte[1024];
-            int length;
-            while (-1 < (length = in.read(buf))) {
-                out.write(buf, 0, length);
-                out.flush();
+        CloseableUtil.closeQuietly(result.getResponseData());
+    }
+
+    /**
+     * Closes the response data of the results collected so far, and makes the requests still running close theirs.
+     */
+    protected void abortBatch(final SmbBatchResult[] results, final AtomicBoolean aborted) {
+        synchronized (results) {
+            aborted.set(true);
+            for (final SmbBatchResult result : results) {
+                if (result != null) {
+                    CloseableUtil.closeQuietly(result.getResponseData());
+                }
             }
-        } catch (final IOException e) {
-            throw new IORuntimeException(e);
+        }
+    }
+
+    protected SmbBatchResult processBatchRequest(final String url, final boolean includeContent) {
+        try {
+            return new SmbBatchResult(url, includeContent ? doGet(url) : doHead(url), null);
+        } catch (final RuntimeException e) {
+            return new SmbBatchResult(url, null, e);
         }
     }
 
@@ -569,12 +1484,569 @@ public class SmbClient extends AbstractCrawlerClient {
 
     /**
      * @param resolveSids
-     *            the resolveSids to set
+     *            true if the account and domain names of the SID entries in the metadata are resolved
      */
     public void setResolveSids(final boolean resolveSids) {
         this.resolveSids = resolveSids;
     }
 
+    /**
+     * @return the listingPageSize
+     */
+    public int getListingPageSize() {
+        return listingPageSize;
+    }
+
+    /**
+     * @param listingPageSize
+     *            the maximum number of children emitted for a directory request, or 0, the default, to emit all of
+     *            them at once. When a directory has more children, the rest is emitted by a request for the directory
+     *            URL with the {@link #LISTING_OFFSET_PARAM} query parameter, which is read from the cursor saved by the
+     *            previous page. The include and exclude URL patterns and URL normalizers of the crawler must keep
+     *            these URLs, or the children after the first page are not crawled.
+     */
+    public void setListingPageSize(final int listingPageSize) {
+        this.listingPageSize = listingPageSize;
+    }
+
+    /**
+     * @param listingCursorCacheSize
+     *            the maximum number of directories whose remaining children are kept for their next pages, or 0 to walk
+     *            a directory from its first entry for each page
+     */
+    public void setListingCursorCacheSize(final int listingCursorCacheSize) {
+        this.listingCursorCacheSize = listingCursorCacheSize;
+    }
+
+    /**
+     * @return the listing cursor cache, or null if it is disabled
+     */
+    public SmbListingCursorCache getListingCursorCache() {
+        return listingCursorCache;
+    }
+
+    /**
+     * @return the excludeHiddenShares
+     */
+    public boolean isExcludeHiddenShares() {
+        return excludeHiddenShares;
+    }
+
+    /**
+     * @param excludeHiddenShares
+     *            true to skip administrative shares and shares whose names end with $ when a server root URL, such as
+     *            {@code smb3://host/}, is crawled. Its disk shares are emitted as children and crawled in parallel by the
+     *            crawler threads, and {@link #setPolitenessPerShare(boolean)} caps the concurrency of each share.
+     */
+    public void setExcludeHiddenShares(final boolean excludeHiddenShares) {
+        this.excludeHiddenShares = excludeHiddenShares;
+    }
+
+    /**
+     * @return the snapshot
+     */
+    public String getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * @param snapshot
+     *            the previous version from which files are read, which is a timewarp token such as
+     *            {@code @GMT-2024.01.31-23.59.59}, {@code latest} for the latest snapshot of each share, or null to read the live
+     *            shares. Snapshots are not modified by clients, so reads do not cause sharing violations and the whole crawl
+     *            sees each share at one point in time. URLs keep their live form. A share without snapshots is crawled live.
+     */
+    public void setSnapshot(final String snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * @return the listingFilter
+     */
+    public SmbListingFilter getListingFilter() {
+        return listingFilter;
+    }
+
+    /**
+     * @param listingFilter
+     *            the filter applied to directory entries before their URLs are emitted, or null to emit all of them
+     */
+    public void setListingFilter(final SmbListingFilter listingFilter) {
+        this.listingFilter = listingFilter;
+    }
+
+    /**
+     * @return the recallOfflineFiles
+     */
+    public boolean isRecallOfflineFiles() {
+        return recallOfflineFiles;
+    }
+
+    /**
+     * @param recallOfflineFiles
+     *            true if the content of offline files is read, which makes the server recall them from offline storage.
+     *            When false, only the metadata of such files is returned.
+     */
+    public void setRecallOfflineFiles(final boolean recallOfflineFiles) {
+        this.recallOfflineFiles = recallOfflineFiles;
+    }
+
+    /**
+     * @return the number of offline files whose content was not read
+     */
+    public long getSkippedOfflineFileCount() {
+        return skippedOfflineFileCount.sum();
+    }
+
+    /**
+     * @return the groupSnapshotEnabled
+     */
+    public boolean isGroupSnapshotEnabled() {
+        return groupSnapshotEnabled;
+    }
+
+    /**
+     * @param groupSnapshotEnabled
+     *            true if the group memberships of each authenticated server are loaded at start, so that
+     *            group members are expanded without RPC calls
+     */
+    public void setGroupSnapshotEnabled(final boolean groupSnapshotEnabled) {
+        this.groupSnapshotEnabled = groupSnapshotEnabled;
+    }
+
+    /**
+     * @param groupSnapshotDirectory
+     *            the directory to which the group snapshots are exported and from which they are loaded at start
+     */
+    public void setGroupSnapshotDirectory(final String groupSnapshotDirectory) {
+        this.groupSnapshotDirectory = groupSnapshotDirectory;
+    }
+
+    /**
+     * @param groupSnapshotRefreshInterval
+     *            the interval in seconds to reload the group snapshots, or 0 to never reload them
+     */
+    public void setGroupSnapshotRefreshInterval(final int groupSnapshotRefreshInterval) {
+        this.groupSnapshotRefreshInterval = groupSnapshotRefreshInterval;
+    }
+
+    /**
+     * @param sidCacheFile
+     *            the file which keeps resolved SID names and group members across restarts, or null to disable it
+     */
+    public void setSidCacheFile(final String sidCacheFile) {
+        this.sidCacheFile = sidCacheFile;
+    }
+
+    /**
+     * @param sidCacheTtl
+     *            the time in milliseconds for which a cached SID name or group is used
+     */
+    public void setSidCacheTtl(final long sidCacheTtl) {
+        this.sidCacheTtl = sidCacheTtl;
+    }
+
+    /**
+     * @param bufferPoolSize
+     *            the maximum number of bytes kept in idle content buffers
+     */
+    public void setBufferPoolSize(final long bufferPoolSize) {
+        this.bufferPoolSize = bufferPoolSize;
+    }
+
+    /**
+     * @param directBuffer
+     *            true if content buffers are allocated outside the heap
+     */
+    public void setDirectBuffer(final boolean directBuffer) {
+        this.directBuffer = directBuffer;
+    }
+
+    /**
+     * @return the buffer pool, or null before initialization
+     */
+    public SmbBufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    /**
+     * @param memoryBudgetSize
+     *            the maximum number of content bytes held in memory by all requests, or 0 for no limit
+     */
+    public void setMemoryBudgetSize(final long memoryBudgetSize) {
+        this.memoryBudgetSize = memoryBudgetSize;
+    }
+
+    /**
+     * @param memoryBudgetWait
+     *            the time in milliseconds to wait for the memory budget before spilling content to disk
+     */
+    public void setMemoryBudgetWait(final long memoryBudgetWait) {
+        this.memoryBudgetWait = memoryBudgetWait;
+    }
+
+    /**
+     * @return the memory budget with its usage and spill counts, or null if there is no limit
+     */
+    public SmbMemoryBudget getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * @param spoolDirectory the directory of the files to which large content is spilled, cleaned up on startup;
+     *            the default is java.io.tmpdir, which is not cleaned up because it may be shared
+     */
+    public void setSpoolDirectory(final String spoolDirectory) {
+        this.spoolDirectory = spoolDirectory;
+    }
+
+    /**
+     * @param spoolReaperQueueSize the maximum number of spool files waiting for deletion in the background
+     */
+    public void setSpoolReaperQueueSize(final int spoolReaperQueueSize) {
+        this.spoolReaperQueueSize = spoolReaperQueueSize;
+    }
+
+    /**
+     * @param contentDigestAlgorithm the algorithm, such as SHA-256, of the digest computed while content is read
+     *            and stored as the smbContentDigest metadata, or null to disable it
+     */
+    public void setContentDigestAlgorithm(final String contentDigestAlgorithm) {
+        this.contentDigestAlgorithm = contentDigestAlgorithm;
+    }
+
+    /**
+     * @param metadataPrefetchThreads the number of threads loading the information of listed files ahead of
+     *            their requests, or 0 to disable prefetching
+     */
+    public void setMetadataPrefetchThreads(final int metadataPrefetchThreads) {
+        this.metadataPrefetchThreads = metadataPrefetchThreads;
+    }
+
+    /**
+     * @param metadataPrefetchQueueSize the maximum number of files waiting to be prefetched
+     */
+    public void setMetadataPrefetchQueueSize(final int metadataPrefetchQueueSize) {
+        this.metadataPrefetchQueueSize = metadataPrefetchQueueSize;
+    }
+
+    /**
+     * @param metadataPrefetchPerHost the maximum number of concurrent prefetches per host
+     */
+    public void setMetadataPrefetchPerHost(final int metadataPrefetchPerHost) {
+        this.metadataPrefetchPerHost = metadataPrefetchPerHost;
+    }
+
+    /**
+     * @param metadataCacheSize the maximum number of prefetched entries
+     */
+    public void setMetadataCacheSize(final int metadataCacheSize) {
+        this.metadataCacheSize = metadataCacheSize;
+    }
+
+    /**
+     * @param metadataCacheTtl the time in milliseconds for which a prefetched entry is valid
+     */
+    public void setMetadataCacheTtl(final long metadataCacheTtl) {
+        this.metadataCacheTtl = metadataCacheTtl;
+    }
+
+    /**
+     * @return the metadata prefetcher with its cache statistics, or null if prefetching is disabled
+     */
+    public SmbMetadataPrefetcher getMetadataPrefetcher() {
+        return metadataPrefetcher;
+    }
+
+    /**
+     * @param headCacheSize the maximum number of files whose information and ACL resolved by HEAD requests are
+     *            reused by the following GET requests, or 0 to disable it
+     */
+    public void setHeadCacheSize(final int headCacheSize) {
+        this.headCacheSize = headCacheSize;
+    }
+
+    /**
+     * @param headCacheTtl the time in milliseconds for which the result of a HEAD request is reused
+     */
+    public void setHeadCacheTtl(final long headCacheTtl) {
+        this.headCacheTtl = headCacheTtl;
+    }
+
+    /**
+     * @param contentCacheSize the maximum number of bytes of small content kept across requests, such as the content read
+     *            by the MIME type detection of a HEAD request and reused by the GET request, or 0 to disable the cache. An
+     *            entry is used only while LastWriteTime, ChangeTime and the size of the file are unchanged.
+     */
+    public void setContentCacheSize(final long contentCacheSize) {
+        this.contentCacheSize = contentCacheSize;
+    }
+
+    /**
+     * @param contentCacheMaxFileSize the maximum size of a file whose content is cached
+     */
+    public void setContentCacheMaxFileSize(final int contentCacheMaxFileSize) {
+        this.contentCacheMaxFileSize = contentCacheMaxFileSize;
+    }
+
+    /**
+     * @param contentCacheTtl the time in milliseconds for which cached content is reused
+     */
+    public void setContentCacheTtl(final long contentCacheTtl) {
+        this.contentCacheTtl = contentCacheTtl;
+    }
+
+    /**
+     * @return the content cache, or null if it is disabled
+     */
+    public SmbContentCache getContentCache() {
+        return contentCache;
+    }
+
+    /**
+     * @return the cache of HEAD results with its hit and miss counts, or null if it is disabled
+     */
+    public SmbMetadataCache getHeadCache() {
+        return headCache;
+    }
+
+    /**
+     * @param statusProbe true to classify each path with a single open request before loading it, so that missing,
+     *            denied and locked paths are answered with 404, 403 and 503 without exceptions
+     */
+    public void setStatusProbe(final boolean statusProbe) {
+        this.statusProbe = statusProbe;
+    }
+
+    /**
+     * @param negativeCacheSize the maximum number of missing or denied paths remembered to answer later requests for
+     *            them, and for the subtrees of denied directories, without accessing the server, or 0 to disable it
+     */
+    public void setNegativeCacheSize(final int negativeCacheSize) {
+        this.negativeCacheSize = negativeCacheSize;
+    }
+
+    /**
+     * @param negativeCacheTtl the time in milliseconds for which a missing or denied path is remembered
+     */
+    public void setNegativeCacheTtl(final long negativeCacheTtl) {
+        this.negativeCacheTtl = negativeCacheTtl;
+    }
+
+    /**
+     * @return the negative cache with its hit count, or null if it is disabled
+     */
+    public SmbNegativeCache getNegativeCache() {
+        return negativeCache;
+    }
+
+    /**
+     * @return the number of probed paths per status
+     */
+    public Map<SmbProbeResult.Status, Long> getProbeStatusCounts() {
+        final Map<SmbProbeResult.Status, Long> counts = new EnumMap<>(SmbProbeResult.Status.class);
+        probeStatusCounterMap.forEach((k, v) -> counts.put(k, v.sum()));
+        return counts;
+    }
+
+    /**
+     * @param sessionKeepAliveInterval the interval in milliseconds at which idle sessions are checked with an SMB2 ECHO
+     *            in the background, which keeps them alive and evicts dead ones, or 0 to disable it
+     */
+    public void setSessionKeepAliveInterval(final long sessionKeepAliveInterval) {
+        this.sessionKeepAliveInterval = sessionKeepAliveInterval;
+    }
+
+    /**
+     * @param sessionValidationTimeout the time in milliseconds to wait for the response of a validation ECHO
+     */
+    public void setSessionValidationTimeout(final long sessionValidationTimeout) {
+        this.sessionValidationTimeout = sessionValidationTimeout;
+    }
+
+    /**
+     * @param adaptiveTimeout true to derive the read and transact timeouts of new sessions from the latencies
+     *            observed per host, bounded by the static timeouts; a pooled session whose timeouts are out of date
+     *            is replaced when it is borrowed
+     */
+    public void setAdaptiveTimeout(final boolean adaptiveTimeout) {
+        this.adaptiveTimeout = adaptiveTimeout;
+    }
+
+    /**
+     * @param adaptiveTimeoutPercentile the percentile of the observed latencies, such as 0.99
+     */
+    public void setAdaptiveTimeoutPercentile(final double adaptiveTimeoutPercentile) {
+        this.adaptiveTimeoutPercentile = adaptiveTimeoutPercentile;
+    }
+
+    /**
+     * @param adaptiveTimeoutFactor the multiplier of the percentile latency
+     */
+    public void setAdaptiveTimeoutFactor(final double adaptiveTimeoutFactor) {
+        this.adaptiveTimeoutFactor = adaptiveTimeoutFactor;
+    }
+
+    /**
+     * @param adaptiveTimeoutFloor the minimum adaptive timeout in milliseconds
+     */
+    public void setAdaptiveTimeoutFloor(final long adaptiveTimeoutFloor) {
+        this.adaptiveTimeoutFloor = adaptiveTimeoutFloor;
+    }
+
+    /**
+     * @param adaptiveTimeoutWindowSize the number of recent latencies kept per host and operation
+     */
+    public void setAdaptiveTimeoutWindowSize(final int adaptiveTimeoutWindowSize) {
+        this.adaptiveTimeoutWindowSize = adaptiveTimeoutWindowSize;
+    }
+
+    /**
+     * @param adaptiveTimeoutMinSamples the number of latencies needed before the static timeouts are replaced
+     */
+    public void setAdaptiveTimeoutMinSamples(final int adaptiveTimeoutMinSamples) {
+        this.adaptiveTimeoutMinSamples = adaptiveTimeoutMinSamples;
+    }
+
+    /**
+     * @return the adaptive timeout policy with the observed latencies, or null if it is disabled
+     */
+    public SmbTimeoutPolicy getTimeoutPolicy() {
+        return timeoutPolicy;
+    }
+
+    /**
+     * @return the spool manager with its disk usage and spill statistics
+     */
+    public SmbSpoolManager getSpoolManager() {
+        return spoolManager;
+    }
+
+    /**
+     * @return the collectOwner
+     */
+    public boolean isCollectOwner() {
+        return collectOwner;
+    }
+
+    /**
+     * @param collectOwner
+     *            true to query the owner and resolve its account name for {@link #SMB_OWNER_ATTRIBUTES}
+     */
+    public void setCollectOwner(final boolean collectOwner) {
+        this.collectOwner = collectOwner;
+    }
+
+    /**
+     * @return the collectAcl
+     */
+    public boolean isCollectAcl() {
+        return collectAcl;
+    }
+
+    /**
+     * @param collectAcl
+     *            true to query the DACL and expand group members for {@link #SMB_ALLOWED_SID_ENTRIES} and
+     *            {@link #SMB_DENIED_SID_ENTRIES}
+     */
+    public void setCollectAcl(final boolean collectAcl) {
+        this.collectAcl = collectAcl;
+    }
+
+    /**
+     * @return the circuitBreakerFailureThreshold
+     */
+    public int getCircuitBreakerFailureThreshold() {
+        return circuitBreakerFailureThreshold;
+    }
+
+    /**
+     * @param circuitBreakerFailureThreshold
+     *            the number of consecutive connection failures which opens the circuit for a host, or 0 to disable it
+     */
+    public void setCircuitBreakerFailureThreshold(final int circuitBreakerFailureThreshold) {
+        this.circuitBreakerFailureThreshold = circuitBreakerFailureThreshold;
+    }
+
+    /**
+     * @return the circuitBreakerCoolDown
+     */
+    public long getCircuitBreakerCoolDown() {
+        return circuitBreakerCoolDown;
+    }
+
+    /**
+     * @param circuitBreakerCoolDown
+     *            the time in milliseconds until an open circuit lets a trial connection through
+     */
+    public void setCircuitBreakerCoolDown(final long circuitBreakerCoolDown) {
+        this.circuitBreakerCoolDown = circuitBreakerCoolDown;
+    }
+
+    /**
+     * @return the maxRetries
+     */
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * @param maxRetries
+     *            the maximum number of retries for an operation failed by an expired session or a dropped connection, or 0 to disable retries
+     */
+    public void setMaxRetries(final int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * @param retryInitialDelay
+     *            the base backoff delay in milliseconds
+     */
+    public void setRetryInitialDelay(final long retryInitialDelay) {
+        this.retryInitialDelay = retryInitialDelay;
+    }
+
+    /**
+     * @param retryMaxDelay
+     *            the upper bound of the backoff delay in milliseconds
+     */
+    public void setRetryMaxDelay(final long retryMaxDelay) {
+        this.retryMaxDelay = retryMaxDelay;
+    }
+
+    /**
+     * @return the politenessProfiles
+     */
+    public String getPolitenessProfiles() {
+        return politenessProfiles;
+    }
+
+    /**
+     * @param politenessProfiles
+     *            the limits per host by time of day, such as {@code 08:00-18:00=4/1048576;*=16/0}, where each entry is
+     *            {@code <start>-<end>=<maxConcurrency>/<maxBytesPerSecond>} and 0 means no limit
+     */
+    public void setPolitenessProfiles(final String politenessProfiles) {
+        this.politenessProfiles = politenessProfiles;
+    }
+
+    /**
+     * @param politenessPerShare
+     *            true if the politeness limits apply to each share instead of each host
+     */
+    public void setPolitenessPerShare(final boolean politenessPerShare) {
+        this.politenessPerShare = politenessPerShare;
+    }
+
+    /**
+     * @param batchThreads
+     *            the number of threads processing the host and share groups of {@link #doGet(List)} in parallel, or 0 to
+     *            process them on the calling thread
+     */
+    public void setBatchThreads(final int batchThreads) {
+        this.batchThreads = batchThreads;
+    }
+
     /**
      * @return the charset
      */
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2012-2024 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.client.smbj;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.hierynomus.msfscc.fileinformation.FileBasicInformation;
+
+/**
+ * Holds the content of small files read by earlier requests, such as the MIME type detection of a HEAD request,
+ * so that a later request for an unchanged file does not read it again. An entry is used only while the
+ * LastWriteTime, the ChangeTime and the size of the file loaded by the later request match the ones at the time
+ * of the read, and expires after the TTL. The least recently used entries are evicted when the cache is full.
+ */
+public class SmbContentCache {
+
+    protected final Map<String, Entry> entryMap = new LinkedHashMap<>(16, 0.75f, true);
+
+    protected final long maxBytes;
+
+    protected final int maxFileSize;
+
+    protected final long ttl;
+
+    protected long usedBytes;
+
+    protected final LongAdder hitCount = new LongAdder();
+
+    protected final LongAdder missCount = new LongAdder();
+
+    protected final LongAdder staleCount = new LongAdder();
+
+    /**
+     * @param maxBytes the maximum number of bytes of all cached content
+     * @param maxFileSize the maximum size of a cached file
+     * @param ttl the time in milliseconds for which an entry is valid
+     */
+    public SmbContentCache(final long maxBytes, final int maxFileSize, final long ttl) {
+        this.maxBytes = maxBytes;
+        this.maxFileSize = maxFileSize;
+        this.ttl = ttl;
+    }
+
+    /**
+     * @param length the size of a file
+     * @return true if the content of the file can be cached
+     */
+    public boolean accepts(final long length) {
+        return length >= 0 && length <= maxFileSize && length <= maxBytes;
+    }
+
+    /**
+     * @param url the URL of the file
+     * @param basicInfo the information of the file loaded before its content was read
+     * @param content the content, which must not be modified afterwards
+     */
+    public synchronized void put(final String url, final FileBasicInformation basicInfo, final byte[] content) {
+        if (basicInfo == null || !accepts(content.length)) {
+            return;
+        }
+        final Entry old = entryMap.put(url, new Entry(content, basicInfo.getLastWriteTime().getWindowsTimeStamp(),
+                basicInfo.getChangeTime().getWindowsTimeStamp(), System.currentTimeMillis() + ttl));
+        if (old != null) {
+            usedBytes -= old.content.length;
+        }
+        usedBytes += content.length;
+        final Iterator<Entry> iterator = entryMap.values().iterator();
+        while (usedBytes > maxBytes && iterator.hasNext()) {
+            usedBytes -= iterator.next().content.length;
+            iterator.remove();
+        }
+    }
+
+    /**
+     * @param url the URL of the file
+     * @param basicInfo the current information of the file
+     * @param length the current size of the file
+     * @return the content, or null if there is no valid entry
+     */
+    public synchronized byte[] get(final String url, final FileBasicInformation basicInfo, final long length) {
+        final Entry entry = entryMap.get(url);
+        if (entry == null) {
+            missCount.increment();
+            return null;
+        }
+        if (basicInfo == null || entry.expiredTime < System.currentTimeMillis() || entry.content.length != length
+                || entry.lastWriteTime != basicInfo.getLastWriteTime().getWindowsTimeStamp()
+                || entry.changeTime != basicInfo.getChangeTime().getWindowsTimeStamp()) {
+            entryMap.remove(url);
+            usedBytes -= entry.content.length;
+            staleCount.increment();
+            return null;
+        }
+        hitCount.increment();
+        return entry.content;
+    }
+
+    public synchronized int size() {
+        return entryMap.size();
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * @return the number of entries dropped because the file changed or the entry expired
+     */
+    public long getStaleCount() {
+        return staleCount.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "SmbContentCache [size=" + size() + ", usedBytes=" + getUsedBytes() + ", hits=" + hitCount + ", misses=" + missCount
+                + ", stale=" + staleCount + "]";
+    }
+
+    protected static class Entry {
+        final byte[] content;
+
+        final long lastWriteTime;
+
+        final long changeTime;
+
+        final long expiredTime;
+
+        Entry(final byte[] content, final long lastWriteTime, final long changeTime, final long expiredTime) {
+            this.content = content;
+            this.lastWriteTime = lastWriteTime;
+            this.changeTime = changeTime;
+            this.expiredTime = expiredTime;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2012-2024 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.client.smbj;
+
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+
+import com.hierynomus.mserref.NtStatus;
+import com.hierynomus.mssmb2.SMBApiException;
+
+/**
+ * Classifies exceptions thrown by smbj.
+ */
+public final class SmbExceptionUtil {
+
+    /** NTSTATUS values which mean that the session or the connection is no longer usable. */
+    private static final Set<NtStatus> SESSION_BROKEN_STATUSES = EnumSet.of(NtStatus.STATUS_NETWORK_SESSION_EXPIRED,
+            NtStatus.STATUS_USER_SESSION_DELETED, NtStatus.STATUS_NETWORK_NAME_DELETED, NtStatus.STATUS_CONNECTION_DISCONNECTED,
+            NtStatus.STATUS_CONNECTION_RESET);
+
+    /** NTSTATUS values which may succeed when the request is sent again. */
+    private static final Set<NtStatus> RETRYABLE_STATUSES = EnumSet.of(NtStatus.STATUS_INSUFF_SERVER_RESOURCES,
+            NtStatus.STATUS_INSUFFICIENT_RESOURCES, NtStatus.STATUS_IO_TIMEOUT, NtStatus.STATUS_RETRY,
+            NtStatus.STATUS_REQUEST_NOT_ACCEPTED);
+
+    private SmbExceptionUtil() {
+    }
+
+    /**
+     * @param t the exception
+     * @return the NTSTATUS of the first {@link SMBApiException} in the cause chain, or null
+     */
+    public static NtStatus getStatus(final Throwable t) {
+        Throwable cause = t;
+        while (cause != null) {
+            if (cause instanceof final SMBApiException e) {
+                return e.getStatus();
+            }
+            cause = cause.getCause();
+        }
+        return null;
+    }
+
+    /**
+     * @param t the exception
+     * @return true if the pooled session which threw the exception must not be reused
+     */
+    public static boolean isSessionBroken(final Throwable t) {
+        Throwable cause = t;
+        while (cause != null) {
+            if (cause instanceof final SMBApiException e) {
+                return SESSION_BROKEN_STATUSES.contains(e.getStatus());
+            }
+            if (cause instanceof IOException || cause instanceof TimeoutException) {
+                return true;
+            }
+            cause = cause.getCause();
+        }
+        return false;
+    }
+
+    /**
+     * @param t the exception
+     * @return true if an idempotent operation which threw the exception can be sent again
+     */
+    public static boolean isRetryable(final Throwable t) {
+        if (t instanceof SmbCircuitOpenException) {
+            return false;
+        }
+        final NtStatus status = getStatus(t);
+        if (status != null) {
+            return SESSION_BROKEN_STATUSES.contains(status) || RETRYABLE_STATUSES.contains(status);
+        }
+        return isSessionBroken(t);
+    }
+}
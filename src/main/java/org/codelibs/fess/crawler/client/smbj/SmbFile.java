@@ -16,22 +16,37 @@
 package org.codelibs.fess.crawler.client.smbj;
 
 import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
 import java.io.InputStream;
-import java.net.MalformedURLException;
-import java.net.URL;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EnumSet;
+import java.util.Iterator;
 import java.util.List;
-import java.util.function.Function;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.output.DeferredFileOutputStream;
 import org.apache.commons.lang3.SystemUtils;
 import org.apache.commons.pool2.impl.GenericKeyedObjectPool;
 import org.codelibs.core.io.CopyUtil;
+import org.codelibs.core.io.FileUtil;
 import org.codelibs.core.lang.StringUtil;
+import org.codelibs.core.lang.ThreadUtil;
 import org.codelibs.fess.crawler.client.smbj.pool.SmbSessionKey;
+import org.codelibs.fess.crawler.client.smbj.pool.SmbSessionLease;
 import org.codelibs.fess.crawler.client.smbj.pool.SmbSessionLoader;
+import org.codelibs.fess.crawler.client.smbj.pool.SmbTimeoutPolicy;
+import org.codelibs.fess.crawler.client.smbj.pool.SmbTimeoutPolicy.Operation;
 import org.codelibs.fess.crawler.exception.CrawlingAccessException;
 import org.codelibs.fess.crawler.util.TemporaryFileInputStream;
 import org.slf4j.Logger;
@@ -41,26 +56,55 @@ import com.hierynomus.msdtyp.ACL;
 import com.hierynomus.msdtyp.AccessMask;
 import com.hierynomus.msdtyp.SecurityDescriptor;
 import com.hierynomus.msdtyp.SecurityInformation;
+import com.hierynomus.mserref.NtStatus;
 import com.hierynomus.msfscc.FileAttributes;
 import com.hierynomus.msfscc.fileinformation.FileBasicInformation;
 import com.hierynomus.msfscc.fileinformation.FileIdBothDirectoryInformation;
 import com.hierynomus.msfscc.fileinformation.FileStandardInformation;
 import com.hierynomus.mssmb2.SMB2CreateDisposition;
 import com.hierynomus.mssmb2.SMB2CreateOptions;
+import com.hierynomus.mssmb2.SMB2Dialect;
+import com.hierynomus.mssmb2.SMB2ImpersonationLevel;
 import com.hierynomus.mssmb2.SMB2ShareAccess;
+import com.hierynomus.mssmb2.SMBApiException;
+import com.hierynomus.mssmb2.messages.SMB2Close;
+import com.hierynomus.mssmb2.messages.SMB2CreateRequest;
+import com.hierynomus.mssmb2.messages.SMB2CreateResponse;
+import com.hierynomus.protocol.commons.EnumWithValue.EnumUtils;
+import com.hierynomus.smbj.common.SmbPath;
+import com.hierynomus.smbj.session.Session;
+import com.hierynomus.smbj.share.Directory;
 import com.hierynomus.smbj.share.DiskShare;
 import com.hierynomus.smbj.share.File;
 import com.hierynomus.smbj.share.Share;
+import com.hierynomus.smbj.share.TreeConnect;
+import com.rapid7.client.dcerpc.mssrvs.dto.NetShareInfo1;
 
 public class SmbFile {
     private static final Logger logger = LoggerFactory.getLogger(SmbFile.class);
 
-    private SmbSessionKey sessionKey;
+    /** Attributes of files whose data is on offline storage and is recalled when read. */
+    public static final long OFFLINE_ATTRIBUTES =
+            SmbListingFilter.ATTRIBUTE_OFFLINE | SmbListingFilter.ATTRIBUTE_RECALL_ON_OPEN | SmbListingFilter.ATTRIBUTE_RECALL_ON_DATA_ACCESS;
+
+    /** The share type of a disk share in NetShareEnum. */
+    protected static final int STYPE_DISKTREE = 0;
+
+    /** The share type flag of an administrative share, such as C$ or IPC$. */
+    protected static final int STYPE_SPECIAL = 0x80000000;
+
+    /** The share type flag of a temporary share. */
+    protected static final int STYPE_TEMPORARY = 0x40000000;
+
+    private final SmbFilePath filePath;
+
+    private final SmbSessionKey sessionKey;
 
     private final GenericKeyedObjectPool<SmbSessionKey, SmbSession> sessionPool;
 
-    private String shareName;
+    private final String shareName;
 
+    /** the path relative to the share in SMB form, prefixed with the snapshot token if any */
     private String path;
 
     private boolean hasFileInfo = false;
@@ -71,44 +115,74 @@ public class SmbFile {
 
     private SecurityDescriptor securityDescriptor;
 
-    private String fileName;
+    private final Set<SecurityInformation> loadedSecurityInformation = EnumSet.noneOf(SecurityInformation.class);
 
-    private String protocol;
+    private Set<SecurityInformation> securityInformation = EnumSet.of(SecurityInformation.OWNER_SECURITY_INFORMATION,
+            SecurityInformation.DACL_SECURITY_INFORMATION);
+
+    private String fileName;
 
     private Boolean isFileObject;
 
     private Boolean isDirectoryObject;
 
-    private SmbSessionLoader sessionLoader;
+    private final SmbSessionLoader sessionLoader;
+
+    private SmbRetryPolicy retryPolicy;
+
+    private SmbPolitenessScheduler politenessScheduler;
+
+    private long deadline;
+
+    private SmbListingFilter listingFilter;
+
+    private boolean recallOfflineFiles = false;
+
+    private SmbMemoryBudget memoryBudget;
+
+    private java.io.File spoolDirectory = SystemUtils.getJavaIoTmpDir();
+
+    private SmbSpoolManager spoolManager;
+
+    private SmbMetadataCache metadataCache;
+
+    private SmbTimeoutPolicy timeoutPolicy;
+
+    private long existsNtStatus = NtStatus.STATUS_OBJECT_NAME_NOT_FOUND.getValue();
+
+    private boolean excludeHiddenShares = true;
+
+    private String snapshotToken;
 
     public SmbFile(final String url, final GenericKeyedObjectPool<SmbSessionKey, SmbSession> sessionPool) {
-        this.sessionPool = sessionPool;
-        try {
-            final URL u = new URL(url);
-            protocol = u.getProtocol();
-            sessionKey = new SmbSessionKey(u.getHost(), u.getPort());
-            final String[] segments = u.getPath().split("/", 3);
-            if (segments.length <= 1) {
-                throw new CrawlingAccessException("Invalid SMB URL: " + url);
-            }
-            if (segments.length > 1) {
-                shareName = segments[1];
-            }
-            if (segments.length > 2) {
-                path = segments[2];
-            } else {
-                path = StringUtil.EMPTY;
-            }
-            sessionLoader = new SmbSessionLoader(sessionKey, sessionPool);
-        } catch (final MalformedURLException e) {
-            throw new CrawlingAccessException("Invalid url: " + url, e);
-        }
+        this(SmbFilePath.parse(url), sessionPool, null);
         if (logger.isDebugEnabled()) {
             logger.debug("Created file: {} -> {}", url, this);
         }
     }
 
+    /**
+     * @param filePath the location of the file
+     * @param sessionPool the session pool
+     * @param sessionLoader the loader shared with the parent, or null to create it
+     */
+    protected SmbFile(final SmbFilePath filePath, final GenericKeyedObjectPool<SmbSessionKey, SmbSession> sessionPool,
+            final SmbSessionLoader sessionLoader) {
+        this.filePath = filePath;
+        this.sessionPool = sessionPool;
+        sessionKey = filePath.getSessionKey();
+        shareName = filePath.getShareName();
+        path = filePath.getSmbPath();
+        this.sessionLoader = sessionLoader != null ? sessionLoader : new SmbSessionLoader(sessionKey, sessionPool);
+    }
+
     public boolean isFile() {
+        if (filePath.isServerRoot()) {
+            return false;
+        }
+        if (isFileObject == null) {
+            loadCachedFileInfo();
+        }
         if (isFileObject == null) {
             isFileObject = existsObject(diskShare -> diskShare.fileExists(path));
         }
@@ -116,40 +190,175 @@ public class SmbFile {
     }
 
     public boolean isDirectory() {
+        if (filePath.isServerRoot()) {
+            return true;
+        }
+        if (isDirectoryObject == null) {
+            loadCachedFileInfo();
+        }
         if (isDirectoryObject == null) {
             isDirectoryObject = existsObject(diskShare -> diskShare.folderExists(path));
         }
         return isDirectoryObject;
     }
 
-    protected boolean existsObject(final Function<DiskShare, Boolean> func) {
-        if (logger.isDebugEnabled()) {
-            logger.debug("Check if {} exists.", this);
+    /**
+     * Opens the path with a single SMB2 CREATE and classifies the returned NTSTATUS, so that missing,
+     * denied and locked paths are detected without exceptions. A found path also answers
+     * {@link #isFile()} and {@link #isDirectory()}. DFS referrals are not followed, so a path behind a DFS link
+     * results in {@link SmbProbeResult.Status#UNKNOWN}.
+     *
+     * @return the result, whose status is UNKNOWN if the request itself failed
+     */
+    public SmbProbeResult probe() {
+        if (filePath.isServerRoot()) {
+            // the shares are enumerated when the root is listed
+            return SmbProbeResult.of(NtStatus.STATUS_SUCCESS.getValue(), FileAttributes.FILE_ATTRIBUTE_DIRECTORY.getValue());
         }
-        SmbSession session = null;
+        SmbProbeResult result;
         try {
-            session = sessionLoader.borrowObject();
-            try (Share share = session.connectShare(shareName)) {
-                if (share instanceof final DiskShare diskShare) {
-                    return func.apply(diskShare);
-                }
-                if (logger.isDebugEnabled()) {
-                    logger.debug("{}://{}/{}/{} is not DiskShare.", protocol, sessionKey, shareName, path, share);
+            result = execute(timed(Operation.TRANSACT, diskShare -> {
+                final TreeConnect treeConnect = diskShare.getTreeConnect();
+                final Session session = treeConnect.getSession();
+                final SMB2Dialect dialect = treeConnect.getNegotiatedProtocol().getDialect();
+                final SMB2CreateRequest request = new SMB2CreateRequest(dialect, session.getSessionId(), treeConnect.getTreeId(),
+                        SMB2ImpersonationLevel.Impersonation, EnumSet.of(AccessMask.FILE_READ_ATTRIBUTES),
+                        EnumSet.noneOf(FileAttributes.class), SMB2ShareAccess.ALL, SMB2CreateDisposition.FILE_OPEN,
+                        EnumSet.noneOf(SMB2CreateOptions.class), new SmbPath(diskShare.getSmbPath(), path));
+                final Future<SMB2CreateResponse> future = session.send(request);
+                final SMB2CreateResponse response = future.get(treeConnect.getConfig().getTransactTimeout(), TimeUnit.MILLISECONDS);
+                final long ntStatus = response.getHeader().getStatusCode();
+                if (!NtStatus.isSuccess(ntStatus)) {
+                    return SmbProbeResult.of(ntStatus, 0L);
                 }
-            } finally {
-                sessionLoader.returnObject(session);
+                // the response of the close is not needed
+                session.send(new SMB2Close(dialect, session.getSessionId(), treeConnect.getTreeId(), response.getFileId()));
+                return SmbProbeResult.of(ntStatus, EnumUtils.toLong(response.getFileAttributes()));
+            }));
+        } catch (final SmbCircuitOpenException e) {
+            throw e;
+        } catch (final Exception e) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Failed to probe {}", this, e);
             }
+            return SmbProbeResult.of(NtStatus.STATUS_OTHER.getValue(), 0L);
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("probe: {} -> {}", this, result);
+        }
+        switch (result.getStatus()) {
+        case FILE:
+        case DIRECTORY:
+            isDirectoryObject = result.getStatus() == SmbProbeResult.Status.DIRECTORY;
+            isFileObject = !isDirectoryObject;
+            break;
+        case NOT_FOUND:
+        case ACCESS_DENIED:
+        case SHARING_VIOLATION:
+            isFileObject = Boolean.FALSE;
+            isDirectoryObject = Boolean.FALSE;
+            break;
+        default:
+            break;
+        }
+        return result;
+    }
+
+    protected boolean existsObject(final DiskShareCallback<Boolean> callback) {
+        if (logger.isDebugEnabled()) {
+            logger.debug("Check if {} exists.", this);
+        }
+        try {
+            return execute(timed(Operation.TRANSACT, callback));
+        } catch (final SmbCircuitOpenException e) {
+            throw e;
         } catch (final Exception e) {
+            existsNtStatus =
+                    e instanceof final SMBApiException apiException ? apiException.getStatusCode() : NtStatus.STATUS_OTHER.getValue();
             if (logger.isDebugEnabled()) {
-                logger.debug("Failed to access {}://{}/{}/{}", protocol, sessionKey, shareName, path, e);
+                logger.debug("Failed to access {}", this, e);
             }
-            IOUtils.closeQuietly(session);
         }
         return false;
     }
 
-    protected synchronized void loadFileInfo() {
+    /**
+     * @return the classified NTSTATUS of the failed existence checks, which is not-found if they failed without an error
+     */
+    public SmbProbeResult getExistsResult() {
+        return SmbProbeResult.of(existsNtStatus, 0L);
+    }
+
+    /**
+     * Takes the information prefetched into the metadata cache, if any.
+     *
+     * @return true if the information is loaded
+     */
+    protected synchronized boolean loadCachedFileInfo() {
+        if (hasFileInfo || metadataCache == null) {
+            return hasFileInfo;
+        }
+        final SmbMetadataCache.Entry entry = metadataCache.take(toString());
+        if (entry == null) {
+            return false;
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("load cached info: {}", this);
+        }
+        applyFileInfo(entry);
+        return true;
+    }
+
+    /**
+     * Uses the information cached by an earlier request for this file if LastWriteTime and ChangeTime
+     * have not changed since, which costs a single query instead of loading the information again.
+     *
+     * @param entry the cached information
+     * @return true if the cached information is used
+     */
+    public synchronized boolean loadValidatedFileInfo(final SmbMetadataCache.Entry entry) {
         if (hasFileInfo) {
+            return false;
+        }
+        final FileBasicInformation current;
+        try {
+            current = execute(timed(Operation.TRANSACT, diskShare -> diskShare.getFileInformation(path, FileBasicInformation.class)));
+        } catch (final SmbCircuitOpenException e) {
+            throw e;
+        } catch (final Exception e) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Failed to validate cached info of {}", this, e);
+            }
+            return false;
+        }
+        if (current.getLastWriteTime().getWindowsTimeStamp() != entry.basicInfo.getLastWriteTime().getWindowsTimeStamp()
+                || current.getChangeTime().getWindowsTimeStamp() != entry.basicInfo.getChangeTime().getWindowsTimeStamp()) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Cached info of {} is stale: {} -> {}", this, entry.basicInfo, current);
+            }
+            return false;
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("load validated info: {}", this);
+        }
+        applyFileInfo(entry);
+        basicInfo = current;
+        return true;
+    }
+
+    private void applyFileInfo(final SmbMetadataCache.Entry entry) {
+        fileName = entry.fileName;
+        standardInfo = entry.standardInfo;
+        basicInfo = entry.basicInfo;
+        securityDescriptor = entry.securityDescriptor;
+        loadedSecurityInformation.addAll(entry.securityInformation);
+        isDirectoryObject = standardInfo.isDirectory();
+        isFileObject = !standardInfo.isDirectory();
+        hasFileInfo = true;
+    }
+
+    protected synchronized void loadFileInfo() {
+        if (hasFileInfo || loadCachedFileInfo()) {
             return;
         }
 
@@ -157,42 +366,215 @@ public class SmbFile {
             logger.debug("load info: {}", this);
         }
 
-        SmbSession session = null;
         try {
-            session = sessionLoader.borrowObject();
-            try (Share share = session.connectShare(shareName)) {
-                if (share instanceof final DiskShare diskShare) {
-                    try (File file = diskShare.openFile(path, EnumSet.of(AccessMask.GENERIC_READ),
-                            EnumSet.of(FileAttributes.FILE_ATTRIBUTE_NORMAL), EnumSet.of(SMB2ShareAccess.FILE_SHARE_READ),
-                            SMB2CreateDisposition.FILE_OPEN, EnumSet.noneOf(SMB2CreateOptions.class))) {
-                        fileName = getFileName(file);
-                        standardInfo = file.getFileInformation(FileStandardInformation.class);
-                        basicInfo = file.getFileInformation(FileBasicInformation.class);
-                        securityDescriptor = file.getSecurityInformation(
-                                EnumSet.of(SecurityInformation.OWNER_SECURITY_INFORMATION, SecurityInformation.DACL_SECURITY_INFORMATION));
-                        if (logger.isDebugEnabled()) {
-                            logger.debug("fileName={}, standardInfo={}, basicInfo={}, securityDescriptor={}", fileName, standardInfo,
-                                    basicInfo, securityDescriptor);
-                        }
-                        return;
+            execute(timed(Operation.TRANSACT, diskShare -> {
+                try (File file = diskShare.openFile(path, EnumSet.of(AccessMask.GENERIC_READ), EnumSet.of(FileAttributes.FILE_ATTRIBUTE_NORMAL),
+                        EnumSet.of(SMB2ShareAccess.FILE_SHARE_READ), SMB2CreateDisposition.FILE_OPEN,
+                        EnumSet.of(SMB2CreateOptions.FILE_OPEN_NO_RECALL))) {
+                    fileName = getFileName(file);
+                    standardInfo = file.getFileInformation(FileStandardInformation.class);
+                    basicInfo = file.getFileInformation(FileBasicInformation.class);
+                    if (!securityInformation.isEmpty()) {
+                        securityDescriptor = file.getSecurityInformation(securityInformation);
+                        loadedSecurityInformation.addAll(securityInformation);
+                    }
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("fileName={}, standardInfo={}, basicInfo={}, securityDescriptor={}", fileName, standardInfo,
+                                basicInfo, securityDescriptor);
                     }
                 }
-                if (logger.isDebugEnabled()) {
-                    logger.debug("{} is not DiskShare.", this, share);
-                }
-            } finally {
-                sessionLoader.returnObject(session);
-            }
+                return null;
+            }));
+        } catch (final SmbCircuitOpenException e) {
+            throw e;
         } catch (final Exception e) {
             if (logger.isDebugEnabled()) {
                 logger.debug("Failed to access {}", this, e);
             }
-            IOUtils.closeQuietly(session);
         } finally {
             hasFileInfo = true;
         }
     }
 
+    /**
+     * Loads the owner and the DACL if the required part was not requested with the file information.
+     *
+     * @param required the part of the security descriptor to use
+     */
+    protected synchronized void loadSecurityInfo(final SecurityInformation required) {
+        if (!hasFileInfo) {
+            loadFileInfo();
+        }
+        if (loadedSecurityInformation.contains(required)) {
+            return;
+        }
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("load security info: {}", this);
+        }
+
+        final Set<SecurityInformation> requested =
+                EnumSet.of(SecurityInformation.OWNER_SECURITY_INFORMATION, SecurityInformation.DACL_SECURITY_INFORMATION);
+        try {
+            securityDescriptor = execute(timed(Operation.TRANSACT, diskShare -> diskShare.getSecurityInfo(path, requested)));
+            if (logger.isDebugEnabled()) {
+                logger.debug("securityDescriptor={}", securityDescriptor);
+            }
+        } catch (final SmbCircuitOpenException e) {
+            throw e;
+        } catch (final Exception e) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Failed to access {}", this, e);
+            }
+        } finally {
+            loadedSecurityInformation.addAll(requested);
+        }
+    }
+
+    /**
+     * Loads the information of this file to be cached for a later request.
+     *
+     * @return the information, or null if it could not be loaded
+     */
+    protected synchronized SmbMetadataCache.Entry getFileInfoEntry() {
+        loadFileInfo();
+        if (standardInfo == null || basicInfo == null) {
+            return null;
+        }
+        return new SmbMetadataCache.Entry(fileName, standardInfo, basicInfo, securityDescriptor, loadedSecurityInformation);
+    }
+
+    /**
+     * Wraps the callback to record its latency, which excludes waiting for a session, in the timeout policy.
+     * A failed or timed-out callback is recorded with its elapsed time, which is at least the timeout if it timed out.
+     */
+    protected <T> DiskShareCallback<T> timed(final Operation operation, final DiskShareCallback<T> callback) {
+        if (timeoutPolicy == null) {
+            return callback;
+        }
+        return diskShare -> {
+            final long startTime = System.nanoTime();
+            try {
+                return callback.apply(diskShare);
+            } finally {
+                recordLatency(operation, startTime);
+            }
+        };
+    }
+
+    protected long read(final File file, final ByteBuffer buffer, final long offset) {
+        final long startTime = System.nanoTime();
+        try {
+            return file.read(buffer, offset);
+        } finally {
+            recordLatency(Operation.READ, startTime);
+        }
+    }
+
+    protected void recordLatency(final Operation operation, final long startTime) {
+        if (timeoutPolicy != null) {
+            timeoutPolicy.record(sessionKey, operation, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+        }
+    }
+
+    /**
+     * Runs the callback on the disk share with a pooled session. A session broken by the failure
+     * is removed from the pool, and the callback is invoked again on a new session if the retry
+     * policy allows it, so the callback must be idempotent.
+     *
+     * @param callback the operation on the share
+     * @return the result of the callback
+     * @throws Exception if the operation failed
+     */
+    protected <T> T execute(final DiskShareCallback<T> callback) throws Exception {
+        return executeOnSession(session -> {
+            if (sessionLoader.isLeased(session)) {
+                // the tree connect is kept by the lease
+                return applyOnShare(callback, SmbSessionLease.current(sessionKey).connectShare(shareName));
+            }
+            try (Share share = session.connectShare(shareName)) {
+                return applyOnShare(callback, share);
+            }
+        });
+    }
+
+    private <T> T applyOnShare(final DiskShareCallback<T> callback, final Share share) throws Exception {
+        if (!(share instanceof final DiskShare diskShare)) {
+            throw new CrawlingAccessException(this + " is not DiskShare.");
+        }
+        return callback.apply(diskShare);
+    }
+
+    /**
+     * Runs the callback with a pooled session, retrying it like {@link #execute(DiskShareCallback)}.
+     *
+     * @param callback the operation on the session
+     * @return the result of the callback
+     * @throws Exception if the operation failed
+     */
+    protected <T> T executeOnSession(final SessionCallback<T> callback) throws Exception {
+        int retryCount = 0;
+        while (true) {
+            SmbSession session = null;
+            try (SmbPolitenessScheduler.Permit permit = acquirePermit()) {
+                session = sessionLoader.borrowObject();
+                final T result = callback.apply(session);
+                sessionLoader.returnObject(session);
+                return result;
+            } catch (final Exception e) {
+                sessionLoader.releaseObject(session, e);
+                if (retryPolicy == null) {
+                    throw e;
+                }
+                final long delay = retryPolicy.getDelay(retryCount);
+                if (!retryPolicy.canRetry(e, retryCount, delay, deadline)) {
+                    throw e;
+                }
+                retryCount++;
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Retrying {} in {}ms ({}/{})", this, delay, retryCount, retryPolicy.getMaxRetries(), e);
+                }
+                ThreadUtil.sleep(delay);
+            }
+        }
+    }
+
+    protected SmbPolitenessScheduler.Permit acquirePermit() {
+        if (politenessScheduler == null) {
+            return () -> {};
+        }
+        return politenessScheduler.acquire(sessionKey, shareName, deadline);
+    }
+
+    protected InputStream throttle(final InputStream in) {
+        if (politenessScheduler == null) {
+            return in;
+        }
+        return politenessScheduler.throttle(sessionKey, shareName, in);
+    }
+
+    protected SmbFile createChild(final String url) {
+        return createChild(SmbFilePath.parse(url));
+    }
+
+    protected SmbFile createChild(final SmbFilePath childPath) {
+        final SmbFile child = new SmbFile(childPath, sessionPool, sessionLoader);
+        child.retryPolicy = retryPolicy;
+        child.politenessScheduler = politenessScheduler;
+        child.deadline = deadline;
+        child.securityInformation = securityInformation;
+        child.listingFilter = listingFilter;
+        child.recallOfflineFiles = recallOfflineFiles;
+        child.memoryBudget = memoryBudget;
+        child.spoolDirectory = spoolDirectory;
+        child.spoolManager = spoolManager;
+        child.metadataCache = metadataCache;
+        child.timeoutPolicy = timeoutPolicy;
+        child.excludeHiddenShares = excludeHiddenShares;
+        child.setSnapshotToken(snapshotToken);
+        return child;
+    }
+
     protected String getFileName(final File file) {
         final String uncPath = file.getUncPath();
         final int lastIndex = uncPath.lastIndexOf("\\");
@@ -212,6 +594,14 @@ public class SmbFile {
         return standardInfo.getEndOfFile();
     }
 
+    public SmbFilePath getFilePath() {
+        return filePath;
+    }
+
+    public SmbSessionKey getSessionKey() {
+        return sessionKey;
+    }
+
     public long getContentLengthLong() {
         return length();
     }
@@ -236,10 +626,45 @@ public class SmbFile {
         return basicInfo.getCreationTime().toEpochMillis();
     }
 
-    public SID getOwnerUser() {
+    /**
+     * @return the file attributes, or 0 if they are not available
+     */
+    public long getAttributes() {
+        if (!hasFileInfo) {
+            loadFileInfo();
+        }
+        if (basicInfo == null) {
+            return 0;
+        }
+        return basicInfo.getFileAttributes();
+    }
+
+    /**
+     * @return the timestamps and attributes of the file, or null if they are not available
+     */
+    public FileBasicInformation getBasicInformation() {
         if (!hasFileInfo) {
             loadFileInfo();
         }
+        return basicInfo;
+    }
+
+    /**
+     * @return true if the data of the file is on offline storage, so that reading it triggers a recall
+     */
+    public boolean isOffline() {
+        return (getAttributes() & OFFLINE_ATTRIBUTES) != 0;
+    }
+
+    /**
+     * @return true if the content of the file is not read because it is offline and recalling it is disabled
+     */
+    public boolean isContentSkipped() {
+        return !recallOfflineFiles && isOffline();
+    }
+
+    public SID getOwnerUser() {
+        loadSecurityInfo(SecurityInformation.OWNER_SECURITY_INFORMATION);
         return new SID(securityDescriptor.getOwnerSid(), sessionLoader);
     }
 
@@ -255,97 +680,466 @@ public class SmbFile {
     }
 
     public SmbFile[] listFiles() {
+        final List<SmbFile> fileList = new ArrayList<>();
+        listChildPaths(0L, 0, (childPath, info) -> fileList.add(createChild(childPath)));
+        return fileList.toArray(n -> new SmbFile[n]);
+    }
+
+    /**
+     * Walks the directory entries page by page as the server returns them, and passes the URL of each
+     * child to the consumer without keeping the listing in memory.
+     *
+     * @param offset the number of entries to skip
+     * @param limit the maximum number of entries to pass, or 0 for no limit
+     * @param consumer the consumer of the child URL and its directory entry
+     * @return true if more entries remain after the limit
+     */
+    public boolean listChildren(final long offset, final int limit, final BiConsumer<String, FileIdBothDirectoryInformation> consumer) {
+        return listChildPaths(offset, limit, (childPath, info) -> consumer.accept(childPath.toString(), info));
+    }
+
+    /**
+     * Walks the directory entries like {@link #listChildren(long, int, BiConsumer)}, passing the path of each child.
+     * The children of the server root are its disk shares, which have no directory entry.
+     *
+     * @param offset the number of entries to skip
+     * @param limit the maximum number of entries to pass, or 0 for no limit
+     * @param consumer the consumer of the child path and its directory entry
+     * @return true if more entries remain after the limit
+     */
+    public boolean listChildPaths(final long offset, final int limit,
+            final BiConsumer<SmbFilePath, FileIdBothDirectoryInformation> consumer) {
+        return listChildPaths(offset, limit, consumer, null);
+    }
+
+    /**
+     * Walks the directory entries like {@link #listChildPaths(long, int, BiConsumer)}. If the remainder consumer is
+     * given, the walk continues after the limit and passes the names and directory entries of the remaining
+     * children to it, so that the following pages do not need another walk.
+     *
+     * @param offset the number of entries to skip
+     * @param limit the maximum number of entries to pass to the consumer, or 0 for no limit
+     * @param consumer the consumer of the child path and its directory entry
+     * @param remainder the consumer of the names and directory entries after the limit, or null to stop at the limit
+     * @return true if more entries remain after the limit
+     */
+    public boolean listChildPaths(final long offset, final int limit,
+            final BiConsumer<SmbFilePath, FileIdBothDirectoryInformation> consumer,
+            final BiConsumer<String, FileIdBothDirectoryInformation> remainder) {
         if (!isDirectory()) {
-            return new SmbFile[0];
+            return false;
         }
 
         if (logger.isDebugEnabled()) {
-            logger.debug("list files: {}", this);
+            logger.debug("list files: {}, offset={}, limit={}", this, offset, limit);
+        }
+
+        if (filePath.isServerRoot()) {
+            return listShares(offset, limit, consumer, remainder);
         }
 
-        SmbSession session = null;
         try {
-            session = sessionLoader.borrowObject();
-            try (Share share = session.connectShare(shareName)) {
-                if (share instanceof final DiskShare diskShare) {
-                    final List<SmbFile> fileList = new ArrayList<>();
-                    for (final FileIdBothDirectoryInformation f : diskShare.list(path)) {
+            return execute(diskShare -> {
+                try (Directory directory = diskShare.openDirectory(path,
+                        EnumSet.of(AccessMask.FILE_LIST_DIRECTORY, AccessMask.FILE_READ_ATTRIBUTES), null, SMB2ShareAccess.ALL,
+                        SMB2CreateDisposition.FILE_OPEN, null)) {
+                    final String searchPattern = listingFilter != null ? listingFilter.getSearchPattern() : null;
+                    final Iterator<FileIdBothDirectoryInformation> iterator = searchPattern != null
+                            ? directory.iterator(FileIdBothDirectoryInformation.class, searchPattern)
+                            : directory.iterator(FileIdBothDirectoryInformation.class);
+                    long position = 0;
+                    int count = 0;
+                    boolean hasMore = false;
+                    while (iterator.hasNext()) {
+                        final FileIdBothDirectoryInformation f = iterator.next();
                         final String fileName = f.getFileName();
-                        if (logger.isDebugEnabled()) {
-                            logger.debug("fileName: {}", fileName);
-                        }
                         if (".".equals(fileName) || "..".equals(fileName)) {
                             continue;
                         }
-                        final StringBuilder buf = new StringBuilder(100);
-                        buf.append(protocol)//
-                                .append("://")//
-                                .append(sessionKey.toString())//
-                                .append('/')//
-                                .append(shareName)//
-                                .append('/')//
-                                .append(path);
-                        if (StringUtil.isNotEmpty(path) && !path.endsWith("/")) {
-                            buf.append('/');
+                        if (listingFilter != null && !listingFilter.accept(f)) {
+                            if (logger.isDebugEnabled()) {
+                                logger.debug("Filtered out: {}", fileName);
+                            }
+                            continue;
+                        }
+                        if (position++ < offset) {
+                            continue;
+                        }
+                        if (limit > 0 && count >= limit) {
+                            if (remainder == null) {
+                                return true;
+                            }
+                            remainder.accept(fileName, f);
+                            hasMore = true;
+                            continue;
                         }
-                        buf.append(fileName);
-                        fileList.add(new SmbFile(buf.toString(), sessionPool));
+                        if (logger.isDebugEnabled()) {
+                            logger.debug("fileName: {}", fileName);
+                        }
+                        consumer.accept(filePath.resolve(fileName), f);
+                        count++;
                     }
-                    return fileList.toArray(n -> new SmbFile[n]);
+                    return hasMore;
                 }
-            } finally {
-                sessionLoader.returnObject(session);
-            }
-            throw new CrawlingAccessException(this + " is not a directory.");
+            });
+        } catch (final CrawlingAccessException e) {
+            throw e;
         } catch (final Exception e) {
-            IOUtils.closeQuietly(session);
             throw new CrawlingAccessException("Failed to get files in " + toString(), e);
         }
     }
 
-    public InputStream getInputStream(final int threshold) {
+    /**
+     * Enumerates the disk shares of the server. Printer, device and IPC shares are always skipped,
+     * and administrative shares and shares whose names end with $ are skipped if excludeHiddenShares is true.
+     *
+     * @param offset the number of shares to skip
+     * @param limit the maximum number of shares to pass, or 0 for no limit
+     * @param consumer the consumer of the share path, with a null directory entry
+     * @param remainder the consumer of the names of the shares after the limit, with a null directory entry,
+     *            or null to stop at the limit
+     * @return true if more shares remain after the limit
+     */
+    protected boolean listShares(final long offset, final int limit,
+            final BiConsumer<SmbFilePath, FileIdBothDirectoryInformation> consumer,
+            final BiConsumer<String, FileIdBothDirectoryInformation> remainder) {
+        final List<NetShareInfo1> shares;
+        try {
+            shares = executeOnSession(SmbSession::getShares);
+        } catch (final CrawlingAccessException e) {
+            throw e;
+        } catch (final Exception e) {
+            throw new CrawlingAccessException("Failed to get shares in " + toString(), e);
+        }
+        long position = 0;
+        int count = 0;
+        boolean hasMore = false;
+        for (final NetShareInfo1 share : shares) {
+            final String name = share.getNetName();
+            if (!isCrawlableShare(name, share.getType())) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Skipped share: {}, type={}", name, Integer.toHexString(share.getType()));
+                }
+                continue;
+            }
+            if (position++ < offset) {
+                continue;
+            }
+            if (limit > 0 && count >= limit) {
+                if (remainder == null) {
+                    return true;
+                }
+                remainder.accept(name, null);
+                hasMore = true;
+                continue;
+            }
+            if (logger.isDebugEnabled()) {
+                logger.debug("shareName: {}", name);
+            }
+            consumer.accept(filePath.resolve(name), null);
+            count++;
+        }
+        return hasMore;
+    }
+
+    protected boolean isCrawlableShare(final String name, final int type) {
+        if (name == null || name.isEmpty() || (type & ~(STYPE_SPECIAL | STYPE_TEMPORARY)) != STYPE_DISKTREE) {
+            return false;
+        }
+        return !excludeHiddenShares || (type & STYPE_SPECIAL) == 0 && !name.endsWith("$");
+    }
+
+    /**
+     * Enumerates the previous versions of the share with FSCTL_SRV_ENUMERATE_SNAPSHOTS on its root directory.
+     *
+     * @return the timewarp tokens of the snapshots, which are empty if the server has no snapshot of the share
+     */
+    public List<String> listSnapshots() {
+        if (filePath.isServerRoot()) {
+            return Collections.emptyList();
+        }
+        try {
+            return execute(timed(Operation.TRANSACT, diskShare -> {
+                try (Directory directory = diskShare.openDirectory(StringUtil.EMPTY,
+                        EnumSet.of(AccessMask.FILE_READ_ATTRIBUTES, AccessMask.SYNCHRONIZE), null, SMB2ShareAccess.ALL,
+                        SMB2CreateDisposition.FILE_OPEN, null)) {
+                    byte[] data = directory.ioctl(SmbSnapshots.FSCTL_SRV_ENUMERATE_SNAPSHOTS, true, new byte[0], 0, 0,
+                            SmbSnapshots.MIN_OUTPUT_SIZE);
+                    if (SmbSnapshots.getCount(data) > 0) {
+                        // the first response only tells the size of the array
+                        data = directory.ioctl(SmbSnapshots.FSCTL_SRV_ENUMERATE_SNAPSHOTS, true, new byte[0], 0, 0,
+                                SmbSnapshots.getRequiredSize(data));
+                    }
+                    final List<String> tokens = SmbSnapshots.parse(data);
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("snapshots of {}: {}", shareName, tokens);
+                    }
+                    return tokens;
+                }
+            }));
+        } catch (final CrawlingAccessException e) {
+            throw e;
+        } catch (final Exception e) {
+            throw new CrawlingAccessException("Failed to get snapshots of " + toString(), e);
+        }
+    }
+
+    /**
+     * Reads the content into a buffer of the pool. If the file grew after its length was loaded,
+     * the content is truncated to the requested size.
+     *
+     * @param pool the pool of the buffer
+     * @param size the number of bytes to read
+     * @return the buffer holding the content from its position to its limit
+     */
+    public ByteBuffer read(final SmbBufferPool pool, final int size) {
+        return read(pool, size, null);
+    }
+
+    /**
+     * Reads the content into a buffer of the pool, updating the digest with it.
+     *
+     * @param pool the pool of the buffer
+     * @param size the content length
+     * @param digest the digest reset and updated with the content, or null
+     * @return the buffer from its position to its limit
+     */
+    public ByteBuffer read(final SmbBufferPool pool, final int size, final MessageDigest digest) {
+        checkReadable();
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("read: {} : {}", this, size);
+        }
+
+        try {
+            return execute(diskShare -> {
+                final ByteBuffer buffer = pool.acquire(size);
+                try (File file = openForRead(diskShare)) {
+                    final int chunkSize = getReadChunkSize(diskShare);
+                    final int limit = buffer.limit();
+                    long offset = 0;
+                    while (buffer.position() < limit) {
+                        buffer.limit(Math.min(limit, buffer.position() + chunkSize));
+                        final long n = read(file, buffer, offset);
+                        if (n <= 0) {
+                            break;
+                        }
+                        offset += n;
+                        consume((int) n);
+                    }
+                    buffer.flip();
+                    if (digest != null) {
+                        digest.reset();
+                        digest.update(buffer.duplicate());
+                    }
+                    return buffer;
+                } catch (final Exception e) {
+                    pool.release(buffer);
+                    throw e;
+                }
+            });
+        } catch (final CrawlingAccessException e) {
+            throw e;
+        } catch (final Exception e) {
+            throw new CrawlingAccessException("Failed to access " + this, e);
+        }
+    }
+
+    /**
+     * Copies the content to the local file with a transfer buffer of the pool.
+     *
+     * @param dest the local file, which is overwritten
+     * @param pool the pool of the transfer buffer
+     */
+    public void copyTo(final Path dest, final SmbBufferPool pool) {
+        copyTo(dest, pool, null);
+    }
+
+    /**
+     * Copies the content to the local file, updating the digest with each chunk as it is transferred.
+     *
+     * @param dest the local file, which is overwritten
+     * @param pool the pool of the transfer buffer
+     * @param digest the digest reset and updated with the content, or null
+     */
+    public void copyTo(final Path dest, final SmbBufferPool pool, final MessageDigest digest) {
+        checkReadable();
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("copy: {} -> {}", this, dest);
+        }
+
+        try {
+            execute(diskShare -> {
+                final int chunkSize = getReadChunkSize(diskShare);
+                final ByteBuffer buffer = pool.acquire(chunkSize);
+                try (File file = openForRead(diskShare);
+                        FileChannel out = FileChannel.open(dest, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                StandardOpenOption.TRUNCATE_EXISTING)) {
+                    if (digest != null) {
+                        digest.reset();
+                    }
+                    long offset = 0;
+                    while (true) {
+                        buffer.clear().limit(chunkSize);
+                        final long n = read(file, buffer, offset);
+                        if (n <= 0) {
+                            break;
+                        }
+                        offset += n;
+                        buffer.flip();
+                        if (digest != null) {
+                            digest.update(buffer.duplicate());
+                        }
+                        while (buffer.hasRemaining()) {
+                            out.write(buffer);
+                        }
+                        consume((int) n);
+                    }
+                } finally {
+                    pool.release(buffer);
+                }
+                return null;
+            });
+        } catch (final CrawlingAccessException e) {
+            throw e;
+        } catch (final Exception e) {
+            throw new CrawlingAccessException("Failed to access " + this, e);
+        }
+    }
+
+    protected void checkReadable() {
         if (!isFile()) {
             throw new CrawlingAccessException(this + " is not a file.");
         }
+        if (isContentSkipped()) {
+            throw new CrawlingAccessException(this + " is offline and recalling it is disabled.");
+        }
+    }
+
+    protected File openForRead(final DiskShare diskShare) {
+        return diskShare.openFile(path, EnumSet.of(AccessMask.GENERIC_READ), EnumSet.of(FileAttributes.FILE_ATTRIBUTE_NORMAL),
+                EnumSet.of(SMB2ShareAccess.FILE_SHARE_READ), SMB2CreateDisposition.FILE_OPEN, EnumSet.noneOf(SMB2CreateOptions.class));
+    }
+
+    protected int getReadChunkSize(final DiskShare diskShare) {
+        final TreeConnect treeConnect = diskShare.getTreeConnect();
+        return Math.min(treeConnect.getConfig().getReadBufferSize(), treeConnect.getNegotiatedProtocol().getMaxReadSize());
+    }
 
+    protected void consume(final int bytes) throws InterruptedIOException {
+        if (politenessScheduler == null) {
+            return;
+        }
+        try {
+            politenessScheduler.consume(sessionKey, shareName, bytes);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while throttling " + this);
+        }
+    }
+
+    public InputStream getInputStream(final int threshold) {
+        checkReadable();
+
+        final long reserved = reserveMemory(threshold);
+        try {
+            final InputStream in = openInputStream((int) reserved);
+            if (memoryBudget == null || reserved == 0) {
+                return in;
+            }
+            return new FilterInputStream(in) {
+                private boolean closed;
+
+                @Override
+                public void close() throws IOException {
+                    if (!closed) {
+                        closed = true;
+                        memoryBudget.release(reserved);
+                    }
+                    super.close();
+                }
+            };
+        } catch (final RuntimeException e) {
+            if (memoryBudget != null && reserved > 0) {
+                memoryBudget.release(reserved);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Reserves memory for the content held in memory by {@link #getInputStream(int)}.
+     *
+     * @param threshold the maximum size held in memory
+     * @return the reserved bytes, which is the threshold if there is no budget, or 0 if the file is empty or the
+     *         content is spilled
+     */
+    protected long reserveMemory(final int threshold) {
+        if (memoryBudget == null) {
+            return threshold;
+        }
+        final long size = Math.min(threshold, Math.max(length(), 0L));
+        if (size == 0) {
+            // an empty file is not spilled
+            return 0L;
+        }
+        if (memoryBudget.reserve(size, 0L)) {
+            return size;
+        }
+        memoryBudget.recordSpill();
+        return 0L;
+    }
+
+    protected InputStream openInputStream(final int threshold) {
         if (logger.isDebugEnabled()) {
             logger.debug("get inputstream: {} : {}", this, threshold);
         }
 
-        SmbSession session = null;
         try {
-            session = sessionLoader.borrowObject();
-            try (Share share = session.connectShare(shareName)) {
-                if (share instanceof final DiskShare diskShare) {
-                    try (File file = diskShare.openFile(path, EnumSet.of(AccessMask.GENERIC_READ),
-                            EnumSet.of(FileAttributes.FILE_ATTRIBUTE_NORMAL), EnumSet.of(SMB2ShareAccess.FILE_SHARE_READ),
-                            SMB2CreateDisposition.FILE_OPEN, EnumSet.noneOf(SMB2CreateOptions.class));
-                            DeferredFileOutputStream dfos = DeferredFileOutputStream.builder().setThreshold(threshold)
-                                    .setPrefix("crawler-SmbFile-").setSuffix(".out").setDirectory(SystemUtils.getJavaIoTmpDir()).get()) {
-                        CopyUtil.copy(file.getInputStream(), dfos);
+            return execute(diskShare -> {
+                try (File file = openForRead(diskShare)) {
+                    final long startTime = System.nanoTime();
+                    final DeferredFileOutputStream dfos = spoolManager != null ? spoolManager.createOutputStream(threshold)
+                            : DeferredFileOutputStream.builder().setThreshold(threshold).setPrefix("crawler-SmbFile-").setSuffix(".out")
+                                    .setDirectory(spoolDirectory).get();
+                    try (dfos) {
+                        CopyUtil.copy(throttle(file.getInputStream()), dfos);
                         dfos.flush();
-
-                        if (logger.isDebugEnabled()) {
-                            logger.debug("use memory: {} ", dfos.isInMemory());
+                    } catch (final Exception e) {
+                        if (!dfos.isInMemory()) {
+                            if (spoolManager != null) {
+                                spoolManager.release(dfos.getPath());
+                            } else {
+                                FileUtil.deleteInBackground(dfos.getFile());
+                            }
                         }
+                        throw e;
+                    }
 
-                        if (dfos.isInMemory()) {
-                            return new ByteArrayInputStream(dfos.getData());
-                        }
-                        return new TemporaryFileInputStream(dfos.getFile());
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("use memory: {} ", dfos.isInMemory());
+                    }
+
+                    if (dfos.isInMemory()) {
+                        return new ByteArrayInputStream(dfos.getData());
+                    }
+                    if (spoolManager != null) {
+                        spoolManager.recordSpill(dfos.getPath(), System.nanoTime() - startTime);
+                        return spoolManager.openTemporary(dfos.getPath());
                     }
+                    return new TemporaryFileInputStream(dfos.getFile());
                 }
-            } finally {
-                sessionLoader.returnObject(session);
-            }
-            throw new CrawlingAccessException(this + " is not a file.");
+            });
+        } catch (final CrawlingAccessException e) {
+            throw e;
         } catch (final Exception e) {
-            IOUtils.closeQuietly(session);
             throw new CrawlingAccessException("Failed to access " + this, e);
         }
     }
 
     public ACE[] getSecurity(final boolean resolveSids) {
+        loadSecurityInfo(SecurityInformation.DACL_SECURITY_INFORMATION);
         final ACL dacl = securityDescriptor.getDacl();
         if (logger.isDebugEnabled()) {
             logger.debug("dacl: {}", dacl);
@@ -355,11 +1149,122 @@ public class SmbFile {
 
     @Override
     public String toString() {
-        return protocol + "://" + sessionKey + "/" + shareName + "/" + path;
+        return filePath.toString();
+    }
+
+    /**
+     * @param retryPolicy the retry policy, or null to disable retries
+     */
+    public void setRetryPolicy(final SmbRetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * @param securityInformation the parts of the security descriptor fetched together with the file information,
+     *            others are loaded on demand
+     */
+    public void setSecurityInformation(final Set<SecurityInformation> securityInformation) {
+        this.securityInformation = securityInformation;
+    }
+
+    /**
+     * @param politenessScheduler the scheduler limiting the load on the host, or null for no limit
+     */
+    public void setPolitenessScheduler(final SmbPolitenessScheduler politenessScheduler) {
+        this.politenessScheduler = politenessScheduler;
+    }
+
+    /**
+     * @param deadline the time in milliseconds after which no retry or wait starts, or 0 for no limit
+     */
+    public void setDeadline(final long deadline) {
+        this.deadline = deadline;
+    }
+
+    /**
+     * @param listingFilter the filter applied to directory entries, or null to list all of them
+     */
+    public void setListingFilter(final SmbListingFilter listingFilter) {
+        this.listingFilter = listingFilter;
+    }
+
+    /**
+     * @param recallOfflineFiles true if the content of offline files may be read, which recalls it from offline storage
+     */
+    public void setRecallOfflineFiles(final boolean recallOfflineFiles) {
+        this.recallOfflineFiles = recallOfflineFiles;
+    }
+
+    /**
+     * @param memoryBudget the budget of content held in memory, or null for no limit
+     */
+    public void setMemoryBudget(final SmbMemoryBudget memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * @param spoolDirectory the directory of the temporary files holding content larger than the in-memory threshold,
+     *            used if there is no spool manager
+     */
+    public void setSpoolDirectory(final java.io.File spoolDirectory) {
+        this.spoolDirectory = spoolDirectory;
+    }
+
+    /**
+     * @param spoolManager the manager of the files holding content larger than the in-memory threshold, which
+     *            records their usage and deletes them when their streams are closed, or null to use the spool directory
+     */
+    public void setSpoolManager(final SmbSpoolManager spoolManager) {
+        this.spoolManager = spoolManager;
+    }
+
+    /**
+     * @param metadataCache the cache of prefetched file information, or null
+     */
+    public void setMetadataCache(final SmbMetadataCache metadataCache) {
+        this.metadataCache = metadataCache;
+    }
+
+    /**
+     * @param timeoutPolicy the policy recording the latencies of requests, or null
+     */
+    public void setTimeoutPolicy(final SmbTimeoutPolicy timeoutPolicy) {
+        this.timeoutPolicy = timeoutPolicy;
+    }
+
+    /**
+     * @param excludeHiddenShares true to skip administrative shares and shares whose names end with $ when listing
+     *            the server root
+     */
+    public void setExcludeHiddenShares(final boolean excludeHiddenShares) {
+        this.excludeHiddenShares = excludeHiddenShares;
+    }
+
+    /**
+     * Opens the path in the snapshot instead of the live share. The URL of the file and its children is unchanged.
+     *
+     * @param snapshotToken the timewarp token, such as {@code @GMT-2024.01.31-23.59.59}, or null for the live share
+     */
+    public void setSnapshotToken(final String snapshotToken) {
+        this.snapshotToken = snapshotToken;
+        final String livePath = filePath.getSmbPath();
+        if (snapshotToken == null) {
+            path = livePath;
+        } else {
+            path = livePath.isEmpty() ? snapshotToken : snapshotToken + "\\" + livePath;
+        }
+    }
+
+    public String getSnapshotToken() {
+        return snapshotToken;
+    }
+
+    interface DiskShareCallback<T> {
+        T apply(DiskShare diskShare) throws Exception;
     }
 
-    interface SessionCallback {
-        void accept(SmbSession session) throws Exception;
+    interface SessionCallback<T> {
+        T apply(SmbSession session) throws Exception;
     }
 
 }
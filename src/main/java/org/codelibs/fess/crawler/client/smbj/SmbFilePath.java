@@ -0,0 +1,220 @@
+/*
+ * Copyright 2012-2024 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.client.smbj;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.codelibs.core.lang.StringUtil;
+import org.codelibs.fess.crawler.client.smbj.pool.SmbSessionKey;
+import org.codelibs.fess.crawler.exception.CrawlingAccessException;
+
+/**
+ * An immutable location of a file on a share. The protocol, the session key and the share name are interned,
+ * so paths created while crawling share them, and the URL and the share-relative path in SMB form are
+ * computed once. A child is created by appending a name without parsing a URL.
+ */
+public final class SmbFilePath {
+
+    private static final Map<String, SmbSessionKey> SESSION_KEY_MAP = new ConcurrentHashMap<>();
+
+    private static final Map<String, String> NAME_MAP = new ConcurrentHashMap<>();
+
+    private final String protocol;
+
+    private final SmbSessionKey sessionKey;
+
+    private final String shareName;
+
+    private final String path;
+
+    private final String url;
+
+    private String smbPath;
+
+    private SmbFilePath(final String protocol, final SmbSessionKey sessionKey, final String shareName, final String path,
+            final String url) {
+        this.protocol = protocol;
+        this.sessionKey = sessionKey;
+        this.shareName = shareName;
+        this.path = path;
+        this.url = url;
+    }
+
+    /**
+     * @param url the URL, such as smb://host:port/share/path or smb://host:port/ for the server root, whose query and
+     *            fragment are ignored
+     * @return the path
+     */
+    public static SmbFilePath parse(final String url) {
+        final int schemeEnd = url.indexOf("://");
+        if (schemeEnd <= 0) {
+            throw new CrawlingAccessException("Invalid url: " + url);
+        }
+        int end = url.length();
+        for (int i = schemeEnd + 3; i < end; i++) {
+            final char c = url.charAt(i);
+            if (c == '?' || c == '#') {
+                end = i;
+            }
+        }
+        final String protocol = intern(url.substring(0, schemeEnd));
+        final int authorityEnd = indexOf(url, '/', schemeEnd + 3, end);
+        if (authorityEnd == -1) {
+            final SmbSessionKey sessionKey = internSessionKey(url.substring(schemeEnd + 3, end));
+            return new SmbFilePath(protocol, sessionKey, StringUtil.EMPTY, StringUtil.EMPTY,
+                    toUrl(protocol, sessionKey, StringUtil.EMPTY, StringUtil.EMPTY));
+        }
+        final SmbSessionKey sessionKey = internSessionKey(url.substring(schemeEnd + 3, authorityEnd));
+        final int shareEnd = indexOf(url, '/', authorityEnd + 1, end);
+        final String shareName;
+        final String path;
+        if (shareEnd == -1) {
+            shareName = intern(url.substring(authorityEnd + 1, end));
+            path = StringUtil.EMPTY;
+        } else {
+            shareName = intern(url.substring(authorityEnd + 1, shareEnd));
+            path = shareName.isEmpty() ? StringUtil.EMPTY : url.substring(shareEnd + 1, end);
+        }
+        return new SmbFilePath(protocol, sessionKey, shareName, path, toUrl(protocol, sessionKey, shareName, path));
+    }
+
+    private static int indexOf(final String value, final char c, final int start, final int end) {
+        for (int i = start; i < end; i++) {
+            if (value.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String toUrl(final String protocol, final SmbSessionKey sessionKey, final String shareName, final String path) {
+        if (shareName.isEmpty()) {
+            return protocol + "://" + sessionKey + "/";
+        }
+        return protocol + "://" + sessionKey + "/" + shareName + "/" + path;
+    }
+
+    protected static SmbSessionKey internSessionKey(final String authority) {
+        final SmbSessionKey sessionKey = SESSION_KEY_MAP.get(authority);
+        if (sessionKey != null) {
+            return sessionKey;
+        }
+        final int userInfoEnd = authority.lastIndexOf('@');
+        final String hostPort = userInfoEnd == -1 ? authority : authority.substring(userInfoEnd + 1);
+        // an IPv6 address is enclosed in brackets
+        final int portStart = hostPort.lastIndexOf(':');
+        final String host;
+        final int port;
+        if (portStart == -1 || hostPort.lastIndexOf(']') > portStart) {
+            host = hostPort;
+            port = -1;
+        } else {
+            host = hostPort.substring(0, portStart);
+            try {
+                port = portStart + 1 == hostPort.length() ? -1 : Integer.parseInt(hostPort.substring(portStart + 1));
+            } catch (final NumberFormatException e) {
+                throw new CrawlingAccessException("Invalid port: " + authority, e);
+            }
+        }
+        return SESSION_KEY_MAP.computeIfAbsent(authority, k -> new SmbSessionKey(intern(host), port));
+    }
+
+    protected static String intern(final String name) {
+        final String value = NAME_MAP.putIfAbsent(name, name);
+        return value != null ? value : name;
+    }
+
+    /**
+     * @param name the name of a file in this directory, or of a share if this is the server root
+     * @return the path of the file
+     */
+    public SmbFilePath resolve(final String name) {
+        if (shareName.isEmpty()) {
+            return new SmbFilePath(protocol, sessionKey, intern(name), StringUtil.EMPTY, url + name + "/");
+        }
+        if (path.isEmpty()) {
+            return new SmbFilePath(protocol, sessionKey, shareName, name, url + name);
+        }
+        if (path.endsWith("/")) {
+            return new SmbFilePath(protocol, sessionKey, shareName, path + name, url + name);
+        }
+        final String childPath = path + "/" + name;
+        return new SmbFilePath(protocol, sessionKey, shareName, childPath, url + "/" + name);
+    }
+
+    public String getProtocol() {
+        return protocol;
+    }
+
+    public SmbSessionKey getSessionKey() {
+        return sessionKey;
+    }
+
+    /**
+     * @return the share name, or an empty string for the server root
+     */
+    public String getShareName() {
+        return shareName;
+    }
+
+    /**
+     * @return true if this is the server root, whose children are the shares
+     */
+    public boolean isServerRoot() {
+        return shareName.isEmpty();
+    }
+
+    /**
+     * @return the path relative to the share with forward slashes, or an empty string for the share itself
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @return the path relative to the share with backslashes, as sent in SMB requests
+     */
+    public String getSmbPath() {
+        String value = smbPath;
+        if (value == null) {
+            value = path.replace('/', '\\');
+            smbPath = value;
+        }
+        return value;
+    }
+
+    @Override
+    public int hashCode() {
+        return url.hashCode();
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof final SmbFilePath other)) {
+            return false;
+        }
+        return url.equals(other.url);
+    }
+
+    @Override
+    public String toString() {
+        return url;
+    }
+}
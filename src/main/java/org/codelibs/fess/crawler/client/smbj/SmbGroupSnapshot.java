@@ -0,0 +1,226 @@
+/*
+ * Copyright 2012-2024 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.client.smbj;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Group and alias memberships of a server, with the transitive members of each group precomputed.
+ * SIDs are numbered, and the members of a group are kept as a sorted array of those numbers.
+ */
+public class SmbGroupSnapshot {
+
+    private static final int FORMAT_VERSION = 1;
+
+    protected final long createdTime;
+
+    protected final String[] sids;
+
+    protected final Map<String, Integer> idMap;
+
+    protected final int[][] closures;
+
+    protected final Set<String> domainSids;
+
+    protected SmbGroupSnapshot(final long createdTime, final String[] sids, final int[][] closures, final Set<String> domainSids) {
+        this.createdTime = createdTime;
+        this.sids = sids;
+        this.closures = closures;
+        this.domainSids = domainSids;
+        this.idMap = new HashMap<>(sids.length * 2);
+        for (int i = 0; i < sids.length; i++) {
+            idMap.put(sids[i], i);
+        }
+    }
+
+    /**
+     * @param domainSids the SIDs of the enumerated domains
+     * @param memberships the direct members of each group and alias
+     * @return the snapshot
+     */
+    public static SmbGroupSnapshot build(final Collection<String> domainSids, final Map<String, ? extends Collection<String>> memberships) {
+        final Map<String, Integer> idMap = new HashMap<>();
+        final List<String> sidList = new ArrayList<>();
+        for (final Map.Entry<String, ? extends Collection<String>> entry : memberships.entrySet()) {
+            idMap.computeIfAbsent(entry.getKey(), k -> addSid(sidList, k));
+            for (final String member : entry.getValue()) {
+                idMap.computeIfAbsent(member, k -> addSid(sidList, k));
+            }
+        }
+
+        final int[][] direct = new int[sidList.size()][];
+        for (final Map.Entry<String, ? extends Collection<String>> entry : memberships.entrySet()) {
+            direct[idMap.get(entry.getKey())] = entry.getValue().stream().mapToInt(idMap::get).toArray();
+        }
+
+        final int[][] closures = new int[sidList.size()][];
+        final BitSet visited = new BitSet(sidList.size());
+        final int[] stack = new int[sidList.size()];
+        for (int group = 0; group < direct.length; group++) {
+            if (direct[group] == null) {
+                continue;
+            }
+            visited.clear();
+            int top = 0;
+            stack[top++] = group;
+            while (top > 0) {
+                final int current = stack[--top];
+                if (direct[current] == null) {
+                    continue;
+                }
+                for (final int member : direct[current]) {
+                    if (!visited.get(member)) {
+                        visited.set(member);
+                        stack[top++] = member;
+                    }
+                }
+            }
+            visited.clear(group);
+            closures[group] = visited.stream().toArray();
+        }
+        return new SmbGroupSnapshot(System.currentTimeMillis(), sidList.toArray(n -> new String[n]), closures,
+                new HashSet<>(domainSids));
+    }
+
+    private static int addSid(final List<String> sidList, final String sid) {
+        sidList.add(sid);
+        return sidList.size() - 1;
+    }
+
+    /**
+     * @param sid the SID of a group or an alias
+     * @return the transitive members, or null if the SID is not a group of the snapshot
+     */
+    public String[] getMembers(final String sid) {
+        final Integer id = idMap.get(sid);
+        if (id == null || closures[id] == null) {
+            return null;
+        }
+        final int[] closure = closures[id];
+        final String[] members = new String[closure.length];
+        for (int i = 0; i < closure.length; i++) {
+            members[i] = sids[closure[i]];
+        }
+        return members;
+    }
+
+    /**
+     * @param sid the SID
+     * @return true if the SID belongs to an enumerated domain, so the snapshot knows all of its groups
+     */
+    public boolean containsDomainOf(final String sid) {
+        final int pos = sid.lastIndexOf('-');
+        return pos > 0 && domainSids.contains(sid.substring(0, pos));
+    }
+
+    public long getCreatedTime() {
+        return createdTime;
+    }
+
+    public int getGroupCount() {
+        return (int) Arrays.stream(closures).filter(c -> c != null).count();
+    }
+
+    /**
+     * Writes the snapshot to the file, replacing it atomically.
+     *
+     * @param file the file
+     * @throws IOException if the file cannot be written
+     */
+    public void export(final Path file) throws IOException {
+        final Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(createdTime);
+            out.writeInt(domainSids.size());
+            for (final String domainSid : domainSids) {
+                out.writeUTF(domainSid);
+            }
+            out.writeInt(sids.length);
+            for (final String sid : sids) {
+                out.writeUTF(sid);
+            }
+            for (final int[] closure : closures) {
+                if (closure == null) {
+                    out.writeInt(-1);
+                    continue;
+                }
+                out.writeInt(closure.length);
+                for (final int id : closure) {
+                    out.writeInt(id);
+                }
+            }
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @param file the file written by {@link #export(Path)}
+     * @return the snapshot
+     * @throws IOException if the file cannot be read
+     */
+    public static SmbGroupSnapshot load(final Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            final int version = in.readInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported snapshot version " + version + ": " + file);
+            }
+            final long createdTime = in.readLong();
+            final int domainCount = in.readInt();
+            final Set<String> domainSids = new HashSet<>();
+            for (int i = 0; i < domainCount; i++) {
+                domainSids.add(in.readUTF());
+            }
+            final String[] sids = new String[in.readInt()];
+            for (int i = 0; i < sids.length; i++) {
+                sids[i] = in.readUTF();
+            }
+            final int[][] closures = new int[sids.length][];
+            for (int i = 0; i < sids.length; i++) {
+                final int length = in.readInt();
+                if (length >= 0) {
+                    closures[i] = new int[length];
+                    for (int j = 0; j < length; j++) {
+                        closures[i][j] = in.readInt();
+                    }
+                }
+            }
+            return new SmbGroupSnapshot(createdTime, sids, closures, domainSids);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SmbGroupSnapshot [createdTime=" + createdTime + ", domains=" + domainSids + ", sids=" + sids.length + ", groups="
+                + getGroupCount() + "]";
+    }
+}
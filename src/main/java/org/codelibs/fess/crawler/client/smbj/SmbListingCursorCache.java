@@ -0,0 +1,268 @@
+/*
+ * Copyright 2012-2024 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.client.smbj;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ObjLongConsumer;
+
+import org.codelibs.core.exception.IORuntimeException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the names and attributes of directory entries after a listing page in files, keyed by the URL of the next
+ * page, so that the next page is read from the file instead of walking the directory from its first entry again. SMB2
+ * QUERY_DIRECTORY cannot resume from an entry, so without a cursor a directory of N entries listed in pages of
+ * P entries costs N * N / (2 * P) entries in total, while with cursors it is walked once. The least recently
+ * saved cursors are deleted when the cache is full, and their pages fall back to walking the directory.
+ */
+public class SmbListingCursorCache implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(SmbListingCursorCache.class);
+
+    private static final String PREFIX = "crawler-SmbClient-";
+
+    private static final String SUFFIX = ".cursor";
+
+    protected final Path directory;
+
+    protected final Map<String, Cursor> cursorMap;
+
+    /**
+     * @param directory the directory of the cursor files
+     * @param maxSize the maximum number of cursors
+     */
+    public SmbListingCursorCache(final Path directory, final int maxSize) {
+        this.directory = directory;
+        cursorMap = new LinkedHashMap<>(16, 0.75f, false) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Cursor> eldest) {
+                if (size() > maxSize) {
+                    eldest.getValue().close();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Deletes cursor files left by a previous process. The directory must not be shared with another running crawler.
+     */
+    public void deleteStaleFiles() {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (final Path file : stream) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Deleting a stale cursor file: {}", file);
+                }
+                Files.deleteIfExists(file);
+            }
+        } catch (final IOException e) {
+            logger.warn("Failed to delete stale cursor files in {}", directory, e);
+        }
+    }
+
+    /**
+     * @return a writer of the children remaining after a page, which is saved by {@link #put(String, Cursor)}
+     */
+    public Writer createWriter() {
+        try {
+            return new Writer(Files.createTempFile(directory, PREFIX, SUFFIX));
+        } catch (final IOException e) {
+            throw new IORuntimeException(e);
+        }
+    }
+
+    /**
+     * @param url the URL of the page starting at the cursor
+     * @param cursor the cursor
+     */
+    public synchronized void put(final String url, final Cursor cursor) {
+        final Cursor old = cursorMap.put(url, cursor);
+        if (old != null && old != cursor) {
+            old.close();
+        }
+    }
+
+    /**
+     * @param url the URL of the page
+     * @return the removed cursor, which must be saved again or closed, or null if there is none
+     */
+    public synchronized Cursor take(final String url) {
+        return cursorMap.remove(url);
+    }
+
+    public synchronized int size() {
+        return cursorMap.size();
+    }
+
+    @Override
+    public synchronized void close() {
+        cursorMap.values().forEach(Cursor::close);
+        cursorMap.clear();
+    }
+
+    /**
+     * Writes children to a cursor file.
+     */
+    public static class Writer implements Closeable {
+        private final Path file;
+
+        private final DataOutputStream out;
+
+        private long count;
+
+        protected Writer(final Path file) throws IOException {
+            this.file = file;
+            out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+        }
+
+        /**
+         * @param name the name of a child
+         * @param attributes the file attributes of the child
+         */
+        public void add(final String name, final long attributes) {
+            try {
+                final byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+                out.writeLong(attributes);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+                count++;
+            } catch (final IOException e) {
+                throw new IORuntimeException(e);
+            }
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return the cursor at the first child, or null if no child is written
+         */
+        public Cursor toCursor() {
+            close();
+            if (count == 0) {
+                delete(file);
+                return null;
+            }
+            return new Cursor(file, 0L);
+        }
+
+        @Override
+        public void close() {
+            try {
+                out.close();
+            } catch (final IOException e) {
+                throw new IORuntimeException(e);
+            }
+        }
+
+        /**
+         * Closes and deletes the file without creating a cursor.
+         */
+        public void discard() {
+            try {
+                out.close();
+            } catch (final IOException e) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Failed to close {}", file, e);
+                }
+            }
+            delete(file);
+        }
+    }
+
+    /**
+     * A position in a cursor file.
+     */
+    public static class Cursor implements Closeable {
+        private final Path file;
+
+        private long position;
+
+        protected Cursor(final Path file, final long position) {
+            this.file = file;
+            this.position = position;
+        }
+
+        /**
+         * Reads the children of the next page and moves the cursor after them.
+         *
+         * @param limit the maximum number of children
+         * @param consumer the consumer of the name and the file attributes of each child
+         * @return true if more children remain
+         */
+        public boolean read(final int limit, final ObjLongConsumer<String> consumer) {
+            final List<String> names = new ArrayList<>();
+            final List<Long> attributes = new ArrayList<>();
+            final boolean hasMore;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                channel.position(position);
+                final DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+                long next = position;
+                while (names.size() < limit && next < channel.size()) {
+                    attributes.add(in.readLong());
+                    final byte[] bytes = new byte[in.readInt()];
+                    in.readFully(bytes);
+                    names.add(new String(bytes, StandardCharsets.UTF_8));
+                    next += Long.BYTES + Integer.BYTES + bytes.length;
+                }
+                position = next;
+                hasMore = next < channel.size();
+            } catch (final EOFException e) {
+                throw new IORuntimeException(new IOException("Truncated cursor file: " + file, e));
+            } catch (final IOException e) {
+                throw new IORuntimeException(e);
+            }
+            for (int i = 0; i < names.size(); i++) {
+                consumer.accept(names.get(i), attributes.get(i));
+            }
+            return hasMore;
+        }
+
+        @Override
+        public void close() {
+            delete(file);
+        }
+    }
+
+    protected static void delete(final Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (final IOException e) {
+            logger.warn("Failed to delete {}", file, e);
+        }
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2012-2024 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.client.smbj;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOCase;
+import org.codelibs.core.lang.StringUtil;
+import org.codelibs.fess.crawler.exception.CrawlerSystemException;
+
+import com.hierynomus.msfscc.FileAttributes;
+import com.hierynomus.msfscc.fileinformation.FileIdBothDirectoryInformation;
+
+/**
+ * Drops directory entries before their URLs are built, using only the metadata returned by the listing.
+ * Extension, size, time and, unless {@link #setApplyNamePatternToDirectories(boolean)} is set, name rules
+ * apply to files only, so that directories are still traversed.
+ */
+public class SmbListingFilter {
+
+    public static final long ATTRIBUTE_OFFLINE = FileAttributes.FILE_ATTRIBUTE_OFFLINE.getValue();
+
+    /** FILE_ATTRIBUTE_RECALL_ON_OPEN, which smbj does not define. */
+    public static final long ATTRIBUTE_RECALL_ON_OPEN = 0x00040000L;
+
+    /** FILE_ATTRIBUTE_RECALL_ON_DATA_ACCESS, which smbj does not define. */
+    public static final long ATTRIBUTE_RECALL_ON_DATA_ACCESS = 0x00400000L;
+
+    protected String namePattern;
+
+    protected boolean applyNamePatternToDirectories = false;
+
+    protected Set<String> includeExtensions = Collections.emptySet();
+
+    protected Set<String> excludeExtensions = Collections.emptySet();
+
+    protected long excludeAttributes = 0L;
+
+    protected long minSize = -1L;
+
+    protected long maxSize = -1L;
+
+    protected long modifiedAfter = 0L;
+
+    protected long modifiedBefore = 0L;
+
+    public boolean accept(final FileIdBothDirectoryInformation info) {
+        return accept(info.getFileName(), info.getFileAttributes(), info.getEndOfFile(), info.getLastWriteTime().toEpochMillis());
+    }
+
+    /**
+     * @param name the file name
+     * @param attributes the file attributes
+     * @param size the file size
+     * @param lastWriteTime the last write time in milliseconds
+     * @return true if the entry is emitted
+     */
+    public boolean accept(final String name, final long attributes, final long size, final long lastWriteTime) {
+        if ((attributes & excludeAttributes) != 0) {
+            return false;
+        }
+        final boolean directory = (attributes & FileAttributes.FILE_ATTRIBUTE_DIRECTORY.getValue()) != 0;
+        if (namePattern != null && (!directory || applyNamePatternToDirectories)
+                && !FilenameUtils.wildcardMatch(name, namePattern, IOCase.INSENSITIVE)) {
+            return false;
+        }
+        if (directory) {
+            return true;
+        }
+        if (!includeExtensions.isEmpty() || !excludeExtensions.isEmpty()) {
+            final String extension = FilenameUtils.getExtension(name).toLowerCase(Locale.ROOT);
+            if (!includeExtensions.isEmpty() && !includeExtensions.contains(extension) || excludeExtensions.contains(extension)) {
+                return false;
+            }
+        }
+        if (minSize >= 0 && size < minSize || maxSize >= 0 && size > maxSize) {
+            return false;
+        }
+        if (modifiedAfter > 0 && lastWriteTime < modifiedAfter || modifiedBefore > 0 && lastWriteTime >= modifiedBefore) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the name pattern which the server can evaluate in QUERY_DIRECTORY, or null
+     */
+    public String getSearchPattern() {
+        return applyNamePatternToDirectories ? namePattern : null;
+    }
+
+    /**
+     * @param namePattern
+     *            the glob, with {@code *} and {@code ?}, which names must match
+     */
+    public void setNamePattern(final String namePattern) {
+        this.namePattern = StringUtil.isBlank(namePattern) ? null : namePattern.trim();
+    }
+
+    /**
+     * @param applyNamePatternToDirectories
+     *            true if directories must match the name pattern too, which lets the server evaluate it
+     */
+    public void setApplyNamePatternToDirectories(final boolean applyNamePatternToDirectories) {
+        this.applyNamePatternToDirectories = applyNamePatternToDirectories;
+    }
+
+    /**
+     * @param includeExtensions
+     *            the comma-separated extensions which files must have
+     */
+    public void setIncludeExtensions(final String includeExtensions) {
+        this.includeExtensions = parseExtensions(includeExtensions);
+    }
+
+    /**
+     * @param excludeExtensions
+     *            the comma-separated extensions which files must not have
+     */
+    public void setExcludeExtensions(final String excludeExtensions) {
+        this.excludeExtensions = parseExtensions(excludeExtensions);
+    }
+
+    /**
+     * @param excludeAttributes
+     *            the comma-separated attributes which entries must not have: hidden, system, offline,
+     *            recall_on_open, recall_on_data_access, temporary or reparse_point
+     */
+    public void setExcludeAttributes(final String excludeAttributes) {
+        long mask = 0L;
+        if (StringUtil.isNotBlank(excludeAttributes)) {
+            for (final String value : excludeAttributes.split(",")) {
+                final String name = value.trim().toLowerCase(Locale.ROOT);
+                mask |= switch (name) {
+                case "" -> 0L;
+                case "hidden" -> FileAttributes.FILE_ATTRIBUTE_HIDDEN.getValue();
+                case "system" -> FileAttributes.FILE_ATTRIBUTE_SYSTEM.getValue();
+                case "offline" -> ATTRIBUTE_OFFLINE;
+                case "recall_on_open" -> ATTRIBUTE_RECALL_ON_OPEN;
+                case "recall_on_data_access" -> ATTRIBUTE_RECALL_ON_DATA_ACCESS;
+                case "temporary" -> FileAttributes.FILE_ATTRIBUTE_TEMPORARY.getValue();
+                case "reparse_point" -> FileAttributes.FILE_ATTRIBUTE_REPARSE_POINT.getValue();
+                default -> throw new CrawlerSystemException("Unknown file attribute: " + name);
+                };
+            }
+        }
+        this.excludeAttributes = mask;
+    }
+
+    /**
+     * @param minSize
+     *            the minimum file size, or -1 for no limit
+     */
+    public void setMinSize(final long minSize) {
+        this.minSize = minSize;
+    }
+
+    /**
+     * @param maxSize
+     *            the maximum file size, or -1 for no limit
+     */
+    public void setMaxSize(final long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @param modifiedAfter
+     *            the inclusive lower bound of the last write time in milliseconds, or 0 for no limit
+     */
+    public void setModifiedAfter(final long modifiedAfter) {
+        this.modifiedAfter = modifiedAfter;
+    }
+
+    /**
+     * @param modifiedBefore
+     *            the exclusive upper bound of the last write time in milliseconds, or 0 for no limit
+     */
+    public void setModifiedBefore(final long modifiedBefore) {
+        this.modifiedBefore = modifiedBefore;
+    }
+
+    protected static Set<String> parseExtensions(final String value) {
+        if (StringUtil.isBlank(value)) {
+            return Collections.emptySet();
+        }
+        final Set<String> extensions = new HashSet<>();
+        for (final String extension : value.split(",")) {
+            final String ext = extension.trim().toLowerCase(Locale.ROOT);
+            if (!ext.isEmpty()) {
+                extensions.add(ext.startsWith(".") ? ext.substring(1) : ext);
+            }
+        }
+        return extensions;
+    }
+
+    @Override
+    public String toString() {
+        return "SmbListingFilter [namePattern=" + namePattern + ", applyNamePatternToDirectories=" + applyNamePatternToDirectories
+                + ", includeExtensions=" + includeExtensions + ", excludeExtensions=" + excludeExtensions + ", excludeAttributes="
+                + Long.toHexString(excludeAttributes) + ", minSize=" + minSize + ", maxSize=" + maxSize + ", modifiedAfter="
+                + modifiedAfter + ", modifiedBefore=" + modifiedBefore + "]";
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2012-2024 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.client.smbj;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Limits the bytes of content held in memory by all requests of a client. Content which does not fit
+ * is spilled to disk by the caller.
+ */
+public class SmbMemoryBudget {
+    private static final Logger logger = LoggerFactory.getLogger(SmbMemoryBudget.class);
+
+    protected final long maxBytes;
+
+    protected final ReentrantLock lock = new ReentrantLock(true);
+
+    protected final Condition released = lock.newCondition();
+
+    protected long usedBytes;
+
+    protected final LongAdder spillCount = new LongAdder();
+
+    protected final LongAdder waitCount = new LongAdder();
+
+    /**
+     * @param maxBytes the maximum number of bytes held in memory
+     */
+    public SmbMemoryBudget(final long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Reserves the bytes, waiting for other requests to release theirs.
+     *
+     * @param bytes the number of bytes
+     * @param timeout the maximum time to wait in milliseconds, or 0 not to wait
+     * @return true if reserved, false if the caller should spill to disk
+     */
+    public boolean reserve(final long bytes, final long timeout) {
+        if (bytes > maxBytes) {
+            return false;
+        }
+        lock.lock();
+        try {
+            if (usedBytes + bytes <= maxBytes) {
+                usedBytes += bytes;
+                return true;
+            }
+            if (timeout <= 0) {
+                return false;
+            }
+            waitCount.increment();
+            long nanos = TimeUnit.MILLISECONDS.toNanos(timeout);
+            while (usedBytes + bytes > maxBytes) {
+                if (nanos <= 0) {
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("Memory budget is exhausted: used={}, requested={}, max={}", usedBytes, bytes, maxBytes);
+                    }
+                    return false;
+                }
+                nanos = released.awaitNanos(nanos);
+            }
+            usedBytes += bytes;
+            return true;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void release(final long bytes) {
+        lock.lock();
+        try {
+            usedBytes -= bytes;
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Counts content spilled to disk because the budget was exhausted.
+     */
+    public void recordSpill() {
+        spillCount.increment();
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public long getUsedBytes() {
+        lock.lock();
+        try {
+            return usedBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getSpillCount() {
+        return spillCount.sum();
+    }
+
+    public long getWaitCount() {
+        return waitCount.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "SmbMemoryBudget [maxBytes=" + maxBytes + ", usedBytes=" + getUsedBytes() + ", spillCount=" + spillCount
+                + ", waitCount=" + waitCount + "]";
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2012-2024 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.client.smbj;
+
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.hierynomus.msdtyp.SecurityDescriptor;
+import com.hierynomus.msdtyp.SecurityInformation;
+import com.hierynomus.msfscc.fileinformation.FileBasicInformation;
+import com.hierynomus.msfscc.fileinformation.FileStandardInformation;
+
+/**
+ * Holds file information loaded ahead of the requests for the files. An entry is removed when it is taken,
+ * because a crawler requests each URL once, and expires after the TTL. The least recently added entries
+ * are evicted when the cache is full.
+ */
+public class SmbMetadataCache {
+
+    protected final Map<String, Entry> entryMap;
+
+    protected final long ttl;
+
+    protected final LongAdder hitCount = new LongAdder();
+
+    protected final LongAdder missCount = new LongAdder();
+
+    /**
+     * @param maxSize the maximum number of entries
+     * @param ttl the time in milliseconds for which an entry is valid
+     */
+    public SmbMetadataCache(final int maxSize, final long ttl) {
+        this.ttl = ttl;
+        entryMap = new LinkedHashMap<>(16, 0.75f, false) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public synchronized void put(final String url, final Entry entry) {
+        entry.expiredTime = System.currentTimeMillis() + ttl;
+        entryMap.put(url, entry);
+    }
+
+    public synchronized boolean contains(final String url) {
+        final Entry entry = entryMap.get(url);
+        return entry != null && entry.expiredTime >= System.currentTimeMillis();
+    }
+
+    /**
+     * @param url the URL of the file
+     * @return the removed entry, or null if there is no valid entry
+     */
+    public synchronized Entry take(final String url) {
+        final Entry entry = entryMap.remove(url);
+        if (entry == null || entry.expiredTime < System.currentTimeMillis()) {
+            missCount.increment();
+            return null;
+        }
+        hitCount.increment();
+        return entry;
+    }
+
+    public synchronized int size() {
+        return entryMap.size();
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "SmbMetadataCache [size=" + size() + ", hits=" + hitCount + ", misses=" + missCount + "]";
+    }
+
+    /**
+     * The information of a file as loaded by {@link SmbFile}.
+     */
+    public static class Entry {
+        final String fileName;
+
+        final FileStandardInformation standardInfo;
+
+        final FileBasicInformation basicInfo;
+
+        final SecurityDescriptor securityDescriptor;
+
+        final Set<SecurityInformation> securityInformation;
+
+        long expiredTime;
+
+        private Map<String, Object> metaData;
+
+        public Entry(final String fileName, final FileStandardInformation standardInfo, final FileBasicInformation basicInfo,
+                final SecurityDescriptor securityDescriptor, final Set<SecurityInformation> securityInformation) {
+            this.fileName = fileName;
+            this.standardInfo = standardInfo;
+            this.basicInfo = basicInfo;
+            this.securityDescriptor = securityDescriptor;
+            this.securityInformation = securityInformation.isEmpty() ? EnumSet.noneOf(SecurityInformation.class)
+                    : EnumSet.copyOf(securityInformation);
+        }
+
+        /**
+         * @return the response metadata resolved from this information, such as the owner and the SID entries, or null
+         */
+        public Map<String, Object> getMetaData() {
+            return metaData;
+        }
+
+        public void setMetaData(final Map<String, Object> metaData) {
+            this.metaData = metaData;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2012-2024 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.client.smbj;
+
+import java.io.Closeable;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.codelibs.fess.crawler.client.smbj.pool.SmbSessionKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loads the information of listed files in the background into a {@link SmbMetadataCache}, so that
+ * the requests for the files do not wait for it. Prefetching is best effort: files are dropped when
+ * the queue is full, and failures are ignored because the request loads the information again.
+ */
+public class SmbMetadataPrefetcher implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(SmbMetadataPrefetcher.class);
+
+    protected final SmbMetadataCache cache;
+
+    protected final ThreadPoolExecutor executor;
+
+    protected final int maxRequestsPerHost;
+
+    protected final Map<SmbSessionKey, Semaphore> hostSemaphoreMap = new ConcurrentHashMap<>();
+
+    protected final Set<String> pendingUrls = ConcurrentHashMap.newKeySet();
+
+    protected final LongAdder prefetchedCount = new LongAdder();
+
+    protected final LongAdder droppedCount = new LongAdder();
+
+    /**
+     * @param cache the cache of the loaded information
+     * @param threads the number of threads loading information
+     * @param queueSize the maximum number of files waiting to be loaded
+     * @param maxRequestsPerHost the maximum number of concurrent loads per host
+     */
+    public SmbMetadataPrefetcher(final SmbMetadataCache cache, final int threads, final int queueSize, final int maxRequestsPerHost) {
+        this.cache = cache;
+        this.maxRequestsPerHost = maxRequestsPerHost;
+        final AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueSize), r -> {
+            final Thread thread = new Thread(r, "SmbMetadataPrefetcher-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Queues the file to load its information unless it is cached or queued already.
+     *
+     * @param file the file
+     */
+    public void prefetch(final SmbFile file) {
+        final String url = file.toString();
+        if (cache.contains(url) || !pendingUrls.add(url)) {
+            return;
+        }
+        try {
+            executor.execute(() -> load(url, file));
+        } catch (final RejectedExecutionException e) {
+            pendingUrls.remove(url);
+            droppedCount.increment();
+            if (logger.isDebugEnabled()) {
+                logger.debug("Dropped prefetching {}", url);
+            }
+        }
+    }
+
+    protected void load(final String url, final SmbFile file) {
+        final Semaphore semaphore = hostSemaphoreMap.computeIfAbsent(file.getSessionKey(), k -> new Semaphore(maxRequestsPerHost));
+        try {
+            semaphore.acquire();
+            try {
+                final SmbMetadataCache.Entry entry = file.getFileInfoEntry();
+                if (entry != null) {
+                    cache.put(url, entry);
+                    prefetchedCount.increment();
+                }
+            } finally {
+                semaphore.release();
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (final Exception e) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Failed to prefetch {}", url, e);
+            }
+        } finally {
+            pendingUrls.remove(url);
+        }
+    }
+
+    public SmbMetadataCache getCache() {
+        return cache;
+    }
+
+    public long getPrefetchedCount() {
+        return prefetchedCount.sum();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SmbMetadataPrefetcher [cache=" + cache + ", prefetched=" + prefetchedCount + ", dropped=" + droppedCount + ", queued="
+                + getQueueSize() + "]";
+    }
+}
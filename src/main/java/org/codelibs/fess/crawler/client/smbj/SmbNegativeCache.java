@@ -0,0 +1,125 @@
+/*
+ * Copyright 2012-2024 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.client.smbj;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remembers paths which were missing or denied, so that requests for them, and for the subtrees of denied
+ * directories, are answered without accessing the server. Entries expire after the TTL, and the least
+ * recently added entries are evicted when the cache is full.
+ */
+public class SmbNegativeCache {
+
+    protected final Map<String, Entry> entryMap;
+
+    protected final long ttl;
+
+    protected final LongAdder hitCount = new LongAdder();
+
+    /**
+     * @param maxSize the maximum number of entries
+     * @param ttl the time in milliseconds for which an entry is valid
+     */
+    public SmbNegativeCache(final int maxSize, final long ttl) {
+        this.ttl = ttl;
+        entryMap = new LinkedHashMap<>(16, 0.75f, false) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * @param url the URL of the path
+     * @param statusCode the status code returned for the path
+     * @param subtree true if the paths under the URL have the same status
+     */
+    public synchronized void put(final String url, final int statusCode, final boolean subtree) {
+        entryMap.put(normalize(url), new Entry(statusCode, subtree, System.currentTimeMillis() + ttl));
+    }
+
+    /**
+     * @param url the URL of the path
+     * @return the cached status code of the path or of a subtree containing it, or 0 if none
+     */
+    public synchronized int getStatusCode(final String url) {
+        final long now = System.currentTimeMillis();
+        String key = normalize(url);
+        final int authorityEnd = key.indexOf('/', key.indexOf("://") + 3);
+        boolean exact = true;
+        while (true) {
+            final Entry entry = entryMap.get(key);
+            if (entry != null) {
+                if (entry.expiredTime < now) {
+                    entryMap.remove(key);
+                } else if (exact || entry.subtree) {
+                    hitCount.increment();
+                    return entry.statusCode;
+                }
+            }
+            final int index = key.lastIndexOf('/');
+            if (authorityEnd == -1 || index <= authorityEnd) {
+                return 0;
+            }
+            key = key.substring(0, index);
+            exact = false;
+        }
+    }
+
+    protected static String normalize(final String url) {
+        int end = url.indexOf('?');
+        if (end == -1) {
+            end = url.length();
+        }
+        while (end > 0 && url.charAt(end - 1) == '/') {
+            end--;
+        }
+        return url.substring(0, end);
+    }
+
+    public synchronized int size() {
+        return entryMap.size();
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "SmbNegativeCache [size=" + size() + ", hits=" + hitCount + "]";
+    }
+
+    protected static class Entry {
+        final int statusCode;
+
+        final boolean subtree;
+
+        final long expiredTime;
+
+        Entry(final int statusCode, final boolean subtree, final long expiredTime) {
+            this.statusCode = statusCode;
+            this.subtree = subtree;
+            this.expiredTime = expiredTime;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2012-2024 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.client.smbj;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.codelibs.core.lang.StringUtil;
+import org.codelibs.fess.crawler.exception.CrawlerSystemException;
+
+/**
+ * Limits for a host during a time of day.
+ */
+public class SmbPolitenessProfile {
+
+    protected final LocalTime startTime;
+
+    protected final LocalTime endTime;
+
+    protected final int maxConcurrency;
+
+    protected final long maxBytesPerSecond;
+
+    /**
+     * @param startTime
+     *            the inclusive start time, or null for the whole day
+     * @param endTime
+     *            the exclusive end time, which may be before startTime to wrap around midnight
+     * @param maxConcurrency
+     *            the maximum number of concurrent operations, or 0 for no limit
+     * @param maxBytesPerSecond
+     *            the maximum read rate, or 0 for no limit
+     */
+    public SmbPolitenessProfile(final LocalTime startTime, final LocalTime endTime, final int maxConcurrency,
+            final long maxBytesPerSecond) {
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.maxConcurrency = maxConcurrency;
+        this.maxBytesPerSecond = maxBytesPerSecond;
+    }
+
+    /**
+     * Parses profiles such as {@code 08:00-18:00=4/1048576;*=16/0}. Each entry is
+     * {@code <start>-<end>=<maxConcurrency>/<maxBytesPerSecond>}, and {@code *} matches the whole day.
+     * The first matching entry is used.
+     *
+     * @param value the profile definitions
+     * @return the profiles
+     */
+    public static List<SmbPolitenessProfile> parse(final String value) {
+        final List<SmbPolitenessProfile> profileList = new ArrayList<>();
+        if (StringUtil.isBlank(value)) {
+            return profileList;
+        }
+        for (final String entry : value.split(";")) {
+            if (StringUtil.isBlank(entry)) {
+                continue;
+            }
+            try {
+                final String[] pair = entry.trim().split("=", 2);
+                final String[] limits = pair[1].trim().split("/", 2);
+                final int maxConcurrency = Integer.parseInt(limits[0].trim());
+                final long maxBytesPerSecond = limits.length > 1 ? Long.parseLong(limits[1].trim()) : 0L;
+                final String range = pair[0].trim();
+                if ("*".equals(range)) {
+                    profileList.add(new SmbPolitenessProfile(null, null, maxConcurrency, maxBytesPerSecond));
+                } else {
+                    final String[] times = range.split("-", 2);
+                    profileList.add(new SmbPolitenessProfile(LocalTime.parse(times[0].trim()), LocalTime.parse(times[1].trim()),
+                            maxConcurrency, maxBytesPerSecond));
+                }
+            } catch (final Exception e) {
+                throw new CrawlerSystemException("Invalid politeness profile: " + entry, e);
+            }
+        }
+        return profileList;
+    }
+
+    public boolean matches(final LocalTime time) {
+        if (startTime == null || endTime == null) {
+            return true;
+        }
+        if (startTime.isBefore(endTime)) {
+            return !time.isBefore(startTime) && time.isBefore(endTime);
+        }
+        return !time.isBefore(startTime) || time.isBefore(endTime);
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public long getMaxBytesPerSecond() {
+        return maxBytesPerSecond;
+    }
+
+    @Override
+    public String toString() {
+        return (startTime == null ? "*" : startTime + "-" + endTime) + "=" + maxConcurrency + "/" + maxBytesPerSecond;
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2012-2024 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.client.smbj;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.codelibs.fess.crawler.client.smbj.pool.SmbSessionKey;
+import org.codelibs.fess.crawler.exception.CrawlingAccessException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Limits concurrent operations and read bandwidth per host, or per share, following time-of-day profiles.
+ * Waiting threads are queued in arrival order.
+ */
+public class SmbPolitenessScheduler {
+    private static final Logger logger = LoggerFactory.getLogger(SmbPolitenessScheduler.class);
+
+    protected final List<SmbPolitenessProfile> profileList;
+
+    protected final boolean perShare;
+
+    protected final Map<String, Throttle> throttleMap = new ConcurrentHashMap<>();
+
+    /**
+     * @param profileList
+     *            the profiles, the first matching one is used
+     * @param perShare
+     *            true if the limits apply to each share instead of each host
+     */
+    public SmbPolitenessScheduler(final List<SmbPolitenessProfile> profileList, final boolean perShare) {
+        this.profileList = profileList;
+        this.perShare = perShare;
+    }
+
+    /**
+     * Waits for a slot of the host.
+     *
+     * @param sessionKey the host
+     * @param shareName the share
+     * @param deadline the time in milliseconds to give up waiting, or 0 to wait until interrupted
+     * @return the permit to close when the operation finishes
+     */
+    public Permit acquire(final SmbSessionKey sessionKey, final String shareName, final long deadline) {
+        final Throttle throttle = getThrottle(sessionKey, shareName);
+        throttle.acquire(getProfile(), deadline);
+        return throttle::release;
+    }
+
+    /**
+     * Wraps the stream so that reads are shaped to the bandwidth of the host.
+     *
+     * @param sessionKey the host
+     * @param shareName the share
+     * @param in the stream to read
+     * @return the throttled stream
+     */
+    public InputStream throttle(final SmbSessionKey sessionKey, final String shareName, final InputStream in) {
+        final Throttle throttle = getThrottle(sessionKey, shareName);
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                final int b = super.read();
+                if (b != -1) {
+                    consume(1);
+                }
+                return b;
+            }
+
+            @Override
+            public int read(final byte[] b, final int off, final int len) throws IOException {
+                final int n = super.read(b, off, len);
+                if (n > 0) {
+                    consume(n);
+                }
+                return n;
+            }
+
+            private void consume(final int n) throws InterruptedIOException {
+                try {
+                    throttle.consume(getProfile(), n);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while throttling " + sessionKey);
+                }
+            }
+        };
+    }
+
+    /**
+     * Waits until the bytes read fit in the bandwidth of the host.
+     *
+     * @param sessionKey the host
+     * @param shareName the share
+     * @param bytes the number of bytes read
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void consume(final SmbSessionKey sessionKey, final String shareName, final int bytes) throws InterruptedException {
+        getThrottle(sessionKey, shareName).consume(getProfile(), bytes);
+    }
+
+    protected Throttle getThrottle(final SmbSessionKey sessionKey, final String shareName) {
+        final String key = perShare ? sessionKey + "/" + shareName : sessionKey.toString();
+        return throttleMap.computeIfAbsent(key, Throttle::new);
+    }
+
+    protected SmbPolitenessProfile getProfile() {
+        final LocalTime now = now();
+        for (final SmbPolitenessProfile profile : profileList) {
+            if (profile.matches(now)) {
+                return profile;
+            }
+        }
+        return null;
+    }
+
+    protected LocalTime now() {
+        return LocalTime.now();
+    }
+
+    public interface Permit extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    protected static class Throttle {
+        private final String name;
+
+        private final ReentrantLock lock = new ReentrantLock(true);
+
+        private final Condition available = lock.newCondition();
+
+        private int active;
+
+        private double tokens;
+
+        private long lastRefillTime = System.nanoTime();
+
+        Throttle(final String name) {
+            this.name = name;
+        }
+
+        void acquire(final SmbPolitenessProfile profile, final long deadline) {
+            lock.lock();
+            try {
+                while (profile != null && profile.getMaxConcurrency() > 0 && active >= profile.getMaxConcurrency()) {
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("Waiting for a slot of {}: active={}, profile={}", name, active, profile);
+                    }
+                    if (deadline <= 0) {
+                        available.await();
+                    } else {
+                        final long remaining = deadline - System.currentTimeMillis();
+                        if (remaining <= 0 || !available.await(remaining, TimeUnit.MILLISECONDS)) {
+                            throw new CrawlingAccessException("Timed out waiting for a slot of " + name);
+                        }
+                    }
+                }
+                active++;
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CrawlingAccessException("Interrupted while waiting for a slot of " + name, e);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void release() {
+            lock.lock();
+            try {
+                active--;
+                available.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void consume(final SmbPolitenessProfile profile, final int bytes) throws InterruptedException {
+            if (profile == null || profile.getMaxBytesPerSecond() <= 0) {
+                return;
+            }
+            final long rate = profile.getMaxBytesPerSecond();
+            final long waitNanos;
+            lock.lock();
+            try {
+                final long now = System.nanoTime();
+                tokens = Math.min(rate, tokens + (now - lastRefillTime) * rate / 1_000_000_000d);
+                lastRefillTime = now;
+                // tokens may go negative so that later readers wait behind earlier ones
+                tokens -= bytes;
+                waitNanos = tokens < 0 ? (long) (-tokens * 1_000_000_000d / rate) : 0L;
+            } finally {
+                lock.unlock();
+            }
+            if (waitNanos > 0) {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2012-2024 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.client.smbj;
+
+import org.codelibs.fess.crawler.Constants;
+
+import com.hierynomus.mserref.NtStatus;
+import com.hierynomus.msfscc.FileAttributes;
+import com.hierynomus.protocol.commons.EnumWithValue.EnumUtils;
+
+/**
+ * The result of {@link SmbFile#probe()}: the NTSTATUS of opening the path, classified with its crawler status code.
+ */
+public class SmbProbeResult {
+
+    public enum Status {
+        FILE(Constants.OK_STATUS_CODE),
+        DIRECTORY(Constants.OK_STATUS_CODE),
+        NOT_FOUND(Constants.NOT_FOUND_STATUS_CODE),
+        ACCESS_DENIED(Constants.FORBIDDEN_STATUS_CODE),
+        /** the file is opened exclusively by another process, which is usually temporary */
+        SHARING_VIOLATION(503),
+        /** any other status, for which the caller falls back to the exception-based checks */
+        UNKNOWN(Constants.SERVER_ERROR_STATUS_CODE);
+
+        private final int statusCode;
+
+        Status(final int statusCode) {
+            this.statusCode = statusCode;
+        }
+
+        public int getStatusCode() {
+            return statusCode;
+        }
+    }
+
+    private final Status status;
+
+    private final long ntStatus;
+
+    private final long attributes;
+
+    private SmbProbeResult(final Status status, final long ntStatus, final long attributes) {
+        this.status = status;
+        this.ntStatus = ntStatus;
+        this.attributes = attributes;
+    }
+
+    /**
+     * @param ntStatus the NTSTATUS of the create response
+     * @param attributes the file attributes of the opened path, or 0 if it was not opened
+     * @return the result
+     */
+    public static SmbProbeResult of(final long ntStatus, final long attributes) {
+        return new SmbProbeResult(toStatus(ntStatus, attributes), ntStatus, attributes);
+    }
+
+    protected static Status toStatus(final long ntStatus, final long attributes) {
+        if (NtStatus.isSuccess(ntStatus)) {
+            return (attributes & FileAttributes.FILE_ATTRIBUTE_DIRECTORY.getValue()) != 0 ? Status.DIRECTORY : Status.FILE;
+        }
+        switch (EnumUtils.valueOf(ntStatus, NtStatus.class, NtStatus.STATUS_OTHER)) {
+        case STATUS_OBJECT_NAME_NOT_FOUND:
+        case STATUS_OBJECT_PATH_NOT_FOUND:
+        case STATUS_NO_SUCH_FILE:
+        case STATUS_NOT_FOUND:
+        case STATUS_DELETE_PENDING:
+        case STATUS_BAD_NETWORK_NAME:
+            return Status.NOT_FOUND;
+        case STATUS_ACCESS_DENIED:
+            return Status.ACCESS_DENIED;
+        case STATUS_SHARING_VIOLATION:
+            return Status.SHARING_VIOLATION;
+        default:
+            return Status.UNKNOWN;
+        }
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public long getNtStatus() {
+        return ntStatus;
+    }
+
+    public long getAttributes() {
+        return attributes;
+    }
+
+    @Override
+    public String toString() {
+        return "SmbProbeResult [status=" + status + ", ntStatus=0x" + Long.toHexString(ntStatus) + ", attributes=0x"
+                + Long.toHexString(attributes) + "]";
+    }
+}
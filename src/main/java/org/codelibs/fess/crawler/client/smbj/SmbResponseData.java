@@ -0,0 +1,184 @@
+/*
+ * Copyright 2012-2024 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.client.smbj;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+import org.codelibs.fess.crawler.entity.ResponseData;
+
+/**
+ * Response data whose body can be a pooled buffer or a spool file. The buffer is returned to the pool,
+ * its memory reservation is released, and the spool file is deleted when the response data is closed,
+ * so streams from {@link #getResponseBody()} must not be used after that.
+ */
+public class SmbResponseData extends ResponseData {
+
+    private ByteBuffer responseBodyBuffer;
+
+    private SmbBufferPool bufferPool;
+
+    private SmbMemoryBudget memoryBudget;
+
+    private Path spoolFile;
+
+    private SmbSpoolManager spoolManager;
+
+    private long reservedBytes;
+
+    /**
+     * @param buffer the body, from its position to its limit
+     * @param pool the pool to which the buffer is returned, or null
+     */
+    public void setResponseBody(final ByteBuffer buffer, final SmbBufferPool pool) {
+        releaseBuffer();
+        super.setResponseBody((byte[]) null);
+        responseBodyBuffer = buffer;
+        bufferPool = pool;
+    }
+
+    /**
+     * @param file the spool file holding the body, read through a memory mapping
+     * @param manager the manager which deletes the file when the body is replaced or closed
+     */
+    public void setResponseBody(final Path file, final SmbSpoolManager manager) {
+        releaseBuffer();
+        super.setResponseBody(file.toFile(), false);
+        spoolFile = file;
+        spoolManager = manager;
+    }
+
+    /**
+     * @param budget the budget from which the bytes of the body were reserved
+     * @param bytes the reserved bytes, released when the body is replaced or closed
+     */
+    public void setMemoryReservation(final SmbMemoryBudget budget, final long bytes) {
+        memoryBudget = budget;
+        reservedBytes = bytes;
+    }
+
+    @Override
+    public void setResponseBody(final byte[] responseBody) {
+        releaseBuffer();
+        super.setResponseBody(responseBody);
+    }
+
+    @Override
+    public void setResponseBody(final File responseBody, final boolean isTemporaryFile) {
+        releaseBuffer();
+        super.setResponseBody(responseBody, isTemporaryFile);
+    }
+
+    @Override
+    public boolean hasResponseBody() {
+        return responseBodyBuffer != null || super.hasResponseBody();
+    }
+
+    @Override
+    public InputStream getResponseBody() {
+        final ByteBuffer buffer = responseBodyBuffer;
+        if (buffer != null) {
+            return new ByteBufferInputStream(buffer.asReadOnlyBuffer());
+        }
+        final Path file = spoolFile;
+        if (file != null) {
+            return spoolManager.open(file);
+        }
+        return super.getResponseBody();
+    }
+
+    @Override
+    public void close() throws IOException {
+        releaseBuffer();
+        super.close();
+    }
+
+    protected void releaseBuffer() {
+        if (responseBodyBuffer != null) {
+            if (bufferPool != null) {
+                bufferPool.release(responseBodyBuffer);
+            }
+            responseBodyBuffer = null;
+            bufferPool = null;
+        }
+        if (memoryBudget != null) {
+            memoryBudget.release(reservedBytes);
+            memoryBudget = null;
+            reservedBytes = 0;
+        }
+        if (spoolFile != null) {
+            spoolManager.release(spoolFile);
+            spoolFile = null;
+            spoolManager = null;
+        }
+    }
+
+    protected static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        protected ByteBufferInputStream(final ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            final int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public long skip(final long n) {
+            final int skipped = (int) Math.max(0L, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+
+        @Override
+        public boolean markSupported() {
+            return true;
+        }
+
+        @Override
+        public synchronized void mark(final int readlimit) {
+            buffer.mark();
+        }
+
+        @Override
+        public synchronized void reset() {
+            buffer.reset();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2012-2024 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.client.smbj;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides if and when a failed idempotent operation is sent again.
+ */
+public class SmbRetryPolicy {
+
+    protected final int maxRetries;
+
+    protected final long initialDelay;
+
+    protected final long maxDelay;
+
+    /**
+     * @param maxRetries
+     *            the maximum number of retries
+     * @param initialDelay
+     *            the base delay in milliseconds, doubled for each retry
+     * @param maxDelay
+     *            the upper bound of the delay in milliseconds
+     */
+    public SmbRetryPolicy(final int maxRetries, final long initialDelay, final long maxDelay) {
+        this.maxRetries = maxRetries;
+        this.initialDelay = initialDelay;
+        this.maxDelay = maxDelay;
+    }
+
+    /**
+     * @param e
+     *            the exception of the failed attempt
+     * @param retryCount
+     *            the number of retries done so far
+     * @param delay
+     *            the delay before the next attempt
+     * @param deadline
+     *            the time in milliseconds after which no retry starts, or 0 for no limit
+     * @return true if the operation should be sent again
+     */
+    public boolean canRetry(final Exception e, final int retryCount, final long delay, final long deadline) {
+        if (retryCount >= maxRetries || !SmbExceptionUtil.isRetryable(e)) {
+            return false;
+        }
+        return deadline <= 0 || System.currentTimeMillis() + delay < deadline;
+    }
+
+    /**
+     * Returns an exponential backoff delay with full jitter.
+     *
+     * @param retryCount
+     *            the number of retries done so far
+     * @return the delay in milliseconds
+     */
+    public long getDelay(final int retryCount) {
+        final long ceiling = Math.min(maxDelay, initialDelay << Math.min(retryCount, 30));
+        if (ceiling <= 0) {
+            return 0L;
+        }
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+}
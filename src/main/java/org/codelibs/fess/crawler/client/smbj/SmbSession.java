@@ -19,22 +19,34 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.codelibs.core.exception.IORuntimeException;
 import org.codelibs.fess.crawler.client.smbj.pool.SmbSessionLoader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.hierynomus.mserref.NtStatus;
+import com.hierynomus.mssmb2.SMB2Packet;
+import com.hierynomus.mssmb2.messages.SMB2Echo;
+import com.hierynomus.smbj.SmbConfig;
+import com.hierynomus.smbj.connection.Connection;
 import com.hierynomus.smbj.session.Session;
 import com.hierynomus.smbj.share.Share;
 import com.rapid7.client.dcerpc.dto.ContextHandle;
 import com.rapid7.client.dcerpc.mssamr.SecurityAccountManagerService;
+import com.rapid7.client.dcerpc.mssamr.dto.AliasHandle;
 import com.rapid7.client.dcerpc.mssamr.dto.DomainHandle;
 import com.rapid7.client.dcerpc.mssamr.dto.GroupHandle;
 import com.rapid7.client.dcerpc.mssamr.dto.MembershipWithAttributes;
 import com.rapid7.client.dcerpc.mssamr.dto.MembershipWithName;
 import com.rapid7.client.dcerpc.mssamr.dto.ServerHandle;
+import com.rapid7.client.dcerpc.mssrvs.ServerService;
+import com.rapid7.client.dcerpc.mssrvs.dto.NetShareInfo1;
 import com.rapid7.client.dcerpc.transport.RPCTransport;
 import com.rapid7.client.dcerpc.transport.SMBTransportFactories;
 
@@ -46,23 +58,81 @@ public class SmbSession implements Closeable {
 
     protected com.rapid7.client.dcerpc.dto.SID domainSid;
 
+    protected SmbConfig config;
+
     public SmbSession(final Session session) {
         this.session = session;
     }
 
+    /**
+     * @param session the authenticated session
+     * @param config the configuration with which the session was created
+     */
+    public SmbSession(final Session session, final SmbConfig config) {
+        this.session = session;
+        this.config = config;
+    }
+
     @Override
     public void close() throws IOException {
         session.getConnection().getClient().close();
     }
 
+    /**
+     * Checks the connection with an SMB2 ECHO request, which needs no share or file handle.
+     *
+     * @param timeout the time in milliseconds to wait for the response
+     * @return true if the server responded successfully
+     */
+    public boolean isAlive(final long timeout) {
+        final Connection connection = session.getConnection();
+        if (!connection.isConnected()) {
+            return false;
+        }
+        try {
+            final Future<SMB2Packet> future = connection.send(new SMB2Echo(connection.getNegotiatedProtocol().getDialect()));
+            final SMB2Packet response = future.get(timeout, TimeUnit.MILLISECONDS);
+            return NtStatus.isSuccess(response.getHeader().getStatusCode());
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (final Exception e) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Echo failed: {}", connection.getRemoteHostname(), e);
+            }
+            return false;
+        }
+    }
+
     public Share connectShare(final String shareName) {
         return session.connectShare(shareName);
     }
 
+    /**
+     * Enumerates the shares of the server with NetShareEnum over SRVSVC.
+     *
+     * @return the shares of all types
+     */
+    public List<NetShareInfo1> getShares() {
+        try {
+            final RPCTransport transport = SMBTransportFactories.SRVSVC.getTransport(session);
+            return new ServerService(transport).getShares1();
+        } catch (final IOException e) {
+            throw new IORuntimeException(e);
+        }
+    }
+
     public Session getSession() {
         return session;
     }
 
+    /**
+     * @return the configuration with which the session was created, or null if it is unknown
+     */
+    public SmbConfig getConfig() {
+        return config;
+    }
+
     protected void loadDomainSid() {
         if (logger.isDebugEnabled()) {
             logger.debug("loading domain sid...");
@@ -121,6 +191,59 @@ public class SmbSession implements Closeable {
         return memberSids.toArray(n -> new SID[n]);
     }
 
+    /**
+     * Enumerates the groups and aliases of all domains of the server with their direct members.
+     *
+     * @return the snapshot of the memberships
+     */
+    public SmbGroupSnapshot loadGroupSnapshot() {
+        final List<String> domainSids = new ArrayList<>();
+        final Map<String, List<String>> memberships = new HashMap<>();
+        try {
+            final RPCTransport transport = SMBTransportFactories.SRVSVC.getTransport(session);
+            final SecurityAccountManagerService samrService = new SecurityAccountManagerService(transport);
+            final ServerHandle serverHandle = samrService.openServer();
+            try {
+                for (final MembershipWithName domain : samrService.getDomainsForServer(serverHandle)) {
+                    final com.rapid7.client.dcerpc.dto.SID sid = samrService.getSIDForDomain(serverHandle, domain.getName());
+                    domainSids.add(sid.toString());
+                    final DomainHandle domainHandle = samrService.openDomain(serverHandle, sid);
+                    try {
+                        for (final MembershipWithName group : samrService.getGroupsForDomain(domainHandle)) {
+                            final GroupHandle groupHandle = samrService.openGroup(domainHandle, group.getRelativeID());
+                            final List<String> members = new ArrayList<>();
+                            for (final MembershipWithAttributes membership : samrService.getMembersForGroup(groupHandle)) {
+                                members.add(sid.resolveRelativeID(membership.getRelativeID()).toString());
+                            }
+                            memberships.put(sid.resolveRelativeID(group.getRelativeID()).toString(), members);
+                            closeHandle(samrService, groupHandle);
+                        }
+                        for (final MembershipWithName alias : samrService.getAliasesForDomain(domainHandle)) {
+                            final AliasHandle aliasHandle = samrService.openAlias(domainHandle, alias.getRelativeID());
+                            final List<String> members = new ArrayList<>();
+                            for (final com.rapid7.client.dcerpc.dto.SID member : samrService.getMembersInAlias(aliasHandle)) {
+                                members.add(member.toString());
+                            }
+                            memberships.put(sid.resolveRelativeID(alias.getRelativeID()).toString(), members);
+                            closeHandle(samrService, aliasHandle);
+                        }
+                    } finally {
+                        closeHandle(samrService, domainHandle);
+                    }
+                }
+            } finally {
+                closeHandle(samrService, serverHandle);
+            }
+        } catch (final IOException e) {
+            throw new IORuntimeException(e);
+        }
+        final SmbGroupSnapshot snapshot = SmbGroupSnapshot.build(domainSids, memberships);
+        if (logger.isDebugEnabled()) {
+            logger.debug("group snapshot: {}", snapshot);
+        }
+        return snapshot;
+    }
+
     protected boolean closeHandle(final SecurityAccountManagerService samrService, final ContextHandle handle) {
         try {
             return samrService.closeHandle(handle);
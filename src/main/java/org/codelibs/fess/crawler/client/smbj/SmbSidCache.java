@@ -0,0 +1,300 @@
+/*
+ * Copyright 2012-2024 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.client.smbj;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps resolved SID names and group members in an append-only log, so that a restarted crawler
+ * does not resolve them again. Records expire after the TTL, and the log is compacted when it is loaded
+ * if most of its records are stale. New records are queued and appended by one caller at a time when enough
+ * of them are pending or the flush interval has passed, and the rest are appended on close, so that lookups
+ * never wait for the file.
+ */
+public class SmbSidCache implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(SmbSidCache.class);
+
+    private static final String NAME_RECORD = "N";
+
+    private static final String MEMBER_RECORD = "G";
+
+    protected final Path file;
+
+    protected final long ttl;
+
+    protected final Map<String, Entry> nameMap = new HashMap<>();
+
+    protected final Map<String, Entry> memberMap = new HashMap<>();
+
+    protected final Queue<String> pendingRecords = new ConcurrentLinkedQueue<>();
+
+    protected final AtomicInteger pendingCount = new AtomicInteger();
+
+    protected final ReentrantLock writeLock = new ReentrantLock();
+
+    protected BufferedWriter writer;
+
+    protected boolean loaded = false;
+
+    protected int flushSize = 100;
+
+    protected long flushInterval = 1000L;
+
+    protected volatile long lastFlushTime = System.currentTimeMillis();
+
+    /**
+     * @param file the log file
+     * @param ttl the time in milliseconds for which a record is valid
+     */
+    public SmbSidCache(final Path file, final long ttl) {
+        this.file = file;
+        this.ttl = ttl;
+    }
+
+    /**
+     * @param sid the SID
+     * @return the account name and the domain name, or null if not cached
+     */
+    public synchronized String[] getNames(final String sid) {
+        return get(nameMap, sid);
+    }
+
+    public void putNames(final String sid, final String accountName, final String domainName) {
+        put(nameMap, NAME_RECORD, sid, new String[] { accountName, domainName });
+    }
+
+    /**
+     * @param sid the SID of a group
+     * @return the direct members, or null if not cached
+     */
+    public synchronized String[] getMembers(final String sid) {
+        return get(memberMap, sid);
+    }
+
+    public void putMembers(final String sid, final String[] members) {
+        put(memberMap, MEMBER_RECORD, sid, members);
+    }
+
+    protected String[] get(final Map<String, Entry> map, final String sid) {
+        load();
+        final Entry entry = map.get(sid);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiredTime < System.currentTimeMillis()) {
+            map.remove(sid);
+            return null;
+        }
+        return entry.values;
+    }
+
+    protected void put(final Map<String, Entry> map, final String type, final String sid, final String[] values) {
+        final Entry entry = new Entry(System.currentTimeMillis() + ttl, values);
+        synchronized (this) {
+            load();
+            map.put(sid, entry);
+        }
+        pendingRecords.add(toRecord(type, sid, entry));
+        // a caller that cannot take the lock leaves its record to the next flush
+        if ((pendingCount.incrementAndGet() >= flushSize || System.currentTimeMillis() - lastFlushTime >= flushInterval)
+                && writeLock.tryLock()) {
+            try {
+                writePendingRecords();
+            } finally {
+                writeLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Appends the queued records to the log.
+     */
+    public void flush() {
+        writeLock.lock();
+        try {
+            writePendingRecords();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    protected void writePendingRecords() {
+        String record;
+        try {
+            while ((record = pendingRecords.poll()) != null) {
+                pendingCount.decrementAndGet();
+                if (writer != null) {
+                    writer.write(record);
+                }
+            }
+            if (writer != null) {
+                writer.flush();
+            }
+        } catch (final IOException e) {
+            logger.warn("Failed to write the SID cache to {}", file, e);
+            IOUtils.closeQuietly(writer);
+            writer = null;
+        }
+        lastFlushTime = System.currentTimeMillis();
+    }
+
+    protected void load() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        int records = 0;
+        if (Files.exists(file)) {
+            final long now = System.currentTimeMillis();
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    records++;
+                    final String[] fields = line.split("\t", -1);
+                    if (fields.length < 4) {
+                        continue;
+                    }
+                    final long expiredTime = Long.parseLong(fields[1]);
+                    if (expiredTime < now) {
+                        continue;
+                    }
+                    if (NAME_RECORD.equals(fields[0]) && fields.length == 5) {
+                        nameMap.put(fields[2], new Entry(expiredTime, new String[] { toValue(fields[3]), toValue(fields[4]) }));
+                    } else if (MEMBER_RECORD.equals(fields[0])) {
+                        memberMap.put(fields[2], new Entry(expiredTime, fields[3].isEmpty() ? new String[0] : fields[3].split(",")));
+                    }
+                }
+            } catch (final Exception e) {
+                logger.warn("Failed to load the SID cache from {}", file, e);
+            }
+        }
+        if (logger.isInfoEnabled()) {
+            logger.info("Loaded the SID cache from {}: names={}, members={}, records={}", file, nameMap.size(), memberMap.size(),
+                    records);
+        }
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            if (records > 2 * (nameMap.size() + memberMap.size())) {
+                compact();
+            }
+            final BufferedWriter newWriter =
+                    Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            writeLock.lock();
+            try {
+                writer = newWriter;
+            } finally {
+                writeLock.unlock();
+            }
+        } catch (final IOException e) {
+            logger.warn("Failed to open the SID cache {}", file, e);
+        }
+    }
+
+    protected void compact() throws IOException {
+        final Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+            for (final Map.Entry<String, Entry> entry : nameMap.entrySet()) {
+                out.write(toRecord(NAME_RECORD, entry.getKey(), entry.getValue()));
+            }
+            for (final Map.Entry<String, Entry> entry : memberMap.entrySet()) {
+                out.write(toRecord(MEMBER_RECORD, entry.getKey(), entry.getValue()));
+            }
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Compacted the SID cache {}", file);
+        }
+    }
+
+    protected String toRecord(final String type, final String sid, final Entry entry) {
+        final StringBuilder buf = new StringBuilder(100);
+        buf.append(type).append('\t').append(entry.expiredTime).append('\t').append(sid).append('\t');
+        if (NAME_RECORD.equals(type)) {
+            buf.append(toField(entry.values[0])).append('\t').append(toField(entry.values[1]));
+        } else {
+            buf.append(String.join(",", entry.values));
+        }
+        return buf.append('\n').toString();
+    }
+
+    private static String toField(final String value) {
+        if (value == null) {
+            return "\0";
+        }
+        return value.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+
+    private static String toValue(final String field) {
+        return "\0".equals(field) ? null : field;
+    }
+
+    /**
+     * @param flushSize the number of queued records at which they are appended to the log
+     */
+    public void setFlushSize(final int flushSize) {
+        this.flushSize = flushSize;
+    }
+
+    /**
+     * @param flushInterval the time in milliseconds after which queued records are appended to the log
+     */
+    public void setFlushInterval(final long flushInterval) {
+        this.flushInterval = flushInterval;
+    }
+
+    @Override
+    public void close() {
+        writeLock.lock();
+        try {
+            writePendingRecords();
+            IOUtils.closeQuietly(writer);
+            writer = null;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    protected static class Entry {
+        final long expiredTime;
+
+        final String[] values;
+
+        Entry(final long expiredTime, final String[] values) {
+            this.expiredTime = expiredTime;
+            this.values = values;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2012-2024 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.client.smbj;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Reads the previous versions of a share returned by FSCTL_SRV_ENUMERATE_SNAPSHOTS. A snapshot is identified by
+ * a timewarp token, such as {@code @GMT-2024.01.31-23.59.59}, which is prepended to a path to open the path in it.
+ */
+public final class SmbSnapshots {
+
+    /** The control code of FSCTL_SRV_ENUMERATE_SNAPSHOTS. */
+    public static final int FSCTL_SRV_ENUMERATE_SNAPSHOTS = 0x00144064;
+
+    /** The size of the header of SRV_SNAPSHOT_ARRAY, which is also the minimum output size. */
+    public static final int HEADER_SIZE = 12;
+
+    /** The minimum output size accepted by servers. */
+    public static final int MIN_OUTPUT_SIZE = 16;
+
+    /** The value of the snapshot option selecting the latest snapshot of each share. */
+    public static final String LATEST = "latest";
+
+    private static final Pattern TOKEN_PATTERN = Pattern.compile("@GMT-\\d{4}\\.\\d{2}\\.\\d{2}-\\d{2}\\.\\d{2}\\.\\d{2}");
+
+    private SmbSnapshots() {
+    }
+
+    /**
+     * @param data the SRV_SNAPSHOT_ARRAY
+     * @return the number of snapshots, including the ones not returned
+     */
+    public static int getCount(final byte[] data) {
+        return data.length < HEADER_SIZE ? 0 : order(data).getInt(0);
+    }
+
+    /**
+     * @param data the SRV_SNAPSHOT_ARRAY
+     * @return the output size needed to return all snapshots
+     */
+    public static int getRequiredSize(final byte[] data) {
+        return data.length < HEADER_SIZE ? MIN_OUTPUT_SIZE : Math.max(MIN_OUTPUT_SIZE, HEADER_SIZE + order(data).getInt(8));
+    }
+
+    /**
+     * @param data the SRV_SNAPSHOT_ARRAY
+     * @return the tokens of the returned snapshots in the order of the server
+     */
+    public static List<String> parse(final byte[] data) {
+        final List<String> tokens = new ArrayList<>();
+        if (data.length < HEADER_SIZE) {
+            return tokens;
+        }
+        final ByteBuffer buffer = order(data);
+        final int returned = buffer.getInt(4);
+        final int end = (int) Math.min(data.length, HEADER_SIZE + (buffer.getInt(8) & 0xffffffffL));
+        int start = HEADER_SIZE;
+        for (int i = start; i + 1 < end && tokens.size() < returned; i += 2) {
+            if (data[i] == 0 && data[i + 1] == 0) {
+                if (i == start) {
+                    break;
+                }
+                tokens.add(new String(data, start, i - start, StandardCharsets.UTF_16LE));
+                start = i + 2;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * @param tokens the tokens of snapshots
+     * @return the token of the latest snapshot, or null if there is none
+     */
+    public static String getLatest(final List<String> tokens) {
+        String latest = null;
+        for (final String token : tokens) {
+            // the fixed-width format sorts chronologically
+            if (isToken(token) && (latest == null || token.compareTo(latest) > 0)) {
+                latest = token;
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * @param value the value
+     * @return true if the value is a timewarp token
+     */
+    public static boolean isToken(final String value) {
+        return value != null && TOKEN_PATTERN.matcher(value).matches();
+    }
+
+    private static ByteBuffer order(final byte[] data) {
+        return ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
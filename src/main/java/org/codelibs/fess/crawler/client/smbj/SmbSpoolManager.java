@@ -0,0 +1,285 @@
+/*
+ * Copyright 2012-2024 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.client.smbj;
+
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.commons.io.output.DeferredFileOutputStream;
+import org.codelibs.core.exception.IORuntimeException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Manages the files to which large content is spilled. Files are created in a configurable directory,
+ * read through memory mappings, and deleted by a background reaper with a bounded queue. A file which cannot be
+ * deleted yet is retried with an increasing delay, and files released after {@link #close()} are deleted by the caller.
+ */
+public class SmbSpoolManager implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(SmbSpoolManager.class);
+
+    private static final String PREFIX = "crawler-SmbClient-";
+
+    private static final String SUFFIX = ".spool";
+
+    private static final int MAX_DELETE_ATTEMPTS = 3;
+
+    private static final long RETRY_DELAY = 200L;
+
+    protected final Path directory;
+
+    protected final int reaperQueueSize;
+
+    protected final ScheduledThreadPoolExecutor reaper;
+
+    protected final AtomicLong usedBytes = new AtomicLong();
+
+    protected final Map<Path, Long> fileSizeMap = new ConcurrentHashMap<>();
+
+    protected final LongAdder spillCount = new LongAdder();
+
+    protected final LongAdder spilledBytes = new LongAdder();
+
+    protected final LongAdder spillNanos = new LongAdder();
+
+    /**
+     * @param directory the directory of the spool files, which is created if needed
+     * @param reaperQueueSize the maximum number of files waiting for deletion, after which the caller deletes them
+     */
+    public SmbSpoolManager(final Path directory, final int reaperQueueSize) {
+        this.directory = directory;
+        this.reaperQueueSize = reaperQueueSize;
+        try {
+            Files.createDirectories(directory);
+        } catch (final IOException e) {
+            throw new IORuntimeException(e);
+        }
+        reaper = new ScheduledThreadPoolExecutor(1, r -> {
+            final Thread thread = new Thread(r, "SmbSpoolReaper");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Deletes spool files left by a previous process. The directory must not be shared with another running crawler.
+     */
+    public void deleteStaleFiles() {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (final Path file : stream) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Deleting a stale spool file: {}", file);
+                }
+                Files.deleteIfExists(file);
+            }
+        } catch (final IOException e) {
+            logger.warn("Failed to delete stale spool files in {}", directory, e);
+        }
+    }
+
+    /**
+     * @return a new empty spool file
+     */
+    public Path createFile() {
+        try {
+            return Files.createTempFile(directory, PREFIX, SUFFIX);
+        } catch (final IOException e) {
+            throw new IORuntimeException(e);
+        }
+    }
+
+    /**
+     * @param threshold the number of bytes held in memory before the content is written to a spool file
+     * @return the stream holding content in memory up to the threshold and in a new spool file beyond it,
+     *         whose file must be passed to {@link #recordSpill(Path, long)} and released
+     */
+    public DeferredFileOutputStream createOutputStream(final int threshold) {
+        return DeferredFileOutputStream.builder().setThreshold(threshold).setPrefix(PREFIX).setSuffix(SUFFIX)
+                .setDirectory(directory.toFile()).get();
+    }
+
+    /**
+     * Records content written to a spool file.
+     *
+     * @param file the spool file
+     * @param elapsedNanos the time taken to write it
+     */
+    public void recordSpill(final Path file, final long elapsedNanos) {
+        try {
+            final long size = Files.size(file);
+            fileSizeMap.put(file, size);
+            usedBytes.addAndGet(size);
+            spilledBytes.add(size);
+            spillNanos.add(elapsedNanos);
+            spillCount.increment();
+        } catch (final IOException e) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Failed to get the size of {}", file, e);
+            }
+        }
+    }
+
+    /**
+     * @param file the spool file
+     * @return the stream reading a memory mapping of the file, or the file itself if it is too large to map
+     */
+    public InputStream open(final Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                return Files.newInputStream(file);
+            }
+            return new SmbResponseData.ByteBufferInputStream(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        } catch (final IOException e) {
+            throw new IORuntimeException(e);
+        }
+    }
+
+    /**
+     * @param file the spool file
+     * @return the stream reading the file like {@link #open(Path)}, which releases the file when it is closed
+     */
+    public InputStream openTemporary(final Path file) {
+        final InputStream in;
+        try {
+            in = open(file);
+        } catch (final RuntimeException e) {
+            release(file);
+            throw e;
+        }
+        return new FilterInputStream(in) {
+            private boolean closed;
+
+            @Override
+            public void close() throws IOException {
+                if (!closed) {
+                    closed = true;
+                    try {
+                        super.close();
+                    } finally {
+                        release(file);
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Deletes the spool file in the background. The file and its mappings must not be used afterwards.
+     *
+     * @param file the spool file
+     */
+    public void release(final Path file) {
+        if (file == null) {
+            return;
+        }
+        if (reaper.isShutdown() || reaper.getQueue().size() >= reaperQueueSize) {
+            delete(file, 1);
+            return;
+        }
+        try {
+            reaper.execute(() -> delete(file, 1));
+        } catch (final RejectedExecutionException e) {
+            // closed concurrently
+            delete(file, 1);
+        }
+    }
+
+    protected void delete(final Path file, final int attempt) {
+        try {
+            Files.deleteIfExists(file);
+            final Long size = fileSizeMap.remove(file);
+            if (size != null) {
+                usedBytes.addAndGet(-size);
+            }
+        } catch (final IOException e) {
+            // a file still mapped cannot be deleted on some platforms until the mapping is collected
+            if (attempt < MAX_DELETE_ATTEMPTS && !reaper.isShutdown()) {
+                try {
+                    reaper.schedule(() -> delete(file, attempt + 1), RETRY_DELAY << (attempt - 1), TimeUnit.MILLISECONDS);
+                    return;
+                } catch (final RejectedExecutionException ex) {
+                    // closed concurrently
+                }
+            }
+            logger.warn("Failed to delete {}", file, e);
+        }
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return the bytes of the spool files not deleted yet
+     */
+    public long getUsedBytes() {
+        return usedBytes.get();
+    }
+
+    public long getSpillCount() {
+        return spillCount.sum();
+    }
+
+    public long getSpilledBytes() {
+        return spilledBytes.sum();
+    }
+
+    /**
+     * @return the average write throughput of spilled content in bytes per second
+     */
+    public long getSpillThroughput() {
+        final long nanos = spillNanos.sum();
+        return nanos == 0 ? 0L : (long) (spilledBytes.sum() * 1_000_000_000d / nanos);
+    }
+
+    public int getPendingDeletionCount() {
+        return reaper.getQueue().size();
+    }
+
+    @Override
+    public void close() {
+        reaper.shutdown();
+        try {
+            if (!reaper.awaitTermination(10, TimeUnit.SECONDS)) {
+                reaper.shutdownNow();
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            reaper.shutdownNow();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SmbSpoolManager [directory=" + directory + ", usedBytes=" + usedBytes + ", spillCount=" + spillCount + ", spilledBytes="
+                + spilledBytes + ", throughput=" + getSpillThroughput() + ", pendingDeletions=" + getPendingDeletionCount() + "]";
+    }
+}
@@ -39,6 +39,12 @@ public class PooledSmbSessionFactory extends BaseKeyedPooledObjectFactory<SmbSes
 
     private final SmbAuthentication[] authentications;
 
+    private SmbCircuitBreaker circuitBreaker;
+
+    private SmbTimeoutPolicy timeoutPolicy;
+
+    private long validationTimeout = 5000L;
+
     public PooledSmbSessionFactory(final SmbConfig smbConfig, final SmbAuthentication[] smbAuthentications) {
         this.config = smbConfig;
         this.authentications = smbAuthentications;
@@ -46,6 +52,9 @@ public class PooledSmbSessionFactory extends BaseKeyedPooledObjectFactory<SmbSes
 
     @Override
     public SmbSession create(final SmbSessionKey key) throws Exception {
+        if (circuitBreaker != null) {
+            circuitBreaker.acquirePermission(key);
+        }
         int port = key.getPort();
         if (port == -1) {
             port = 139;
@@ -53,24 +62,37 @@ public class PooledSmbSessionFactory extends BaseKeyedPooledObjectFactory<SmbSes
         if (logger.isDebugEnabled()) {
             logger.debug("Creating a new session by key={}, port={}", key, port);
         }
+        final SmbConfig sessionConfig = timeoutPolicy != null ? timeoutPolicy.getConfig(key, config) : config;
         @SuppressWarnings("resource") // close client in destroyObject
-        final SMBClient client = new SMBClient(config);
+        final SMBClient client = new SMBClient(sessionConfig);
         if (logger.isDebugEnabled()) {
             logger.debug("Created SMBClient with " + //
-                    "supportedDialects=" + config.getSupportedDialects() + //
-                    ", signingRequired=" + config.isSigningRequired() + //
-                    ", dfsEnabled=" + config.isDfsEnabled() + //
-                    ", useMultiProtocolNegotiate=" + config.isUseMultiProtocolNegotiate() + //
-                    ", readBufferSize=" + config.getReadBufferSize() + //
-                    ", readTimeout=" + config.getReadTimeout() + //
-                    ", writeBufferSize=" + config.getWriteBufferSize() + //
-                    ", writeTimeout=" + config.getWriteTimeout() + //
-                    ", transactBufferSize=" + config.getTransactBufferSize() + //
-                    ", transactTimeout=" + config.getTransactTimeout() + //
-                    ", soTimeout=" + config.getSoTimeout() + //
-                    ", encryptData=" + config.isEncryptData());
+                    "supportedDialects=" + sessionConfig.getSupportedDialects() + //
+                    ", signingRequired=" + sessionConfig.isSigningRequired() + //
+                    ", dfsEnabled=" + sessionConfig.isDfsEnabled() + //
+                    ", useMultiProtocolNegotiate=" + sessionConfig.isUseMultiProtocolNegotiate() + //
+                    ", readBufferSize=" + sessionConfig.getReadBufferSize() + //
+                    ", readTimeout=" + sessionConfig.getReadTimeout() + //
+                    ", writeBufferSize=" + sessionConfig.getWriteBufferSize() + //
+                    ", writeTimeout=" + sessionConfig.getWriteTimeout() + //
+                    ", transactBufferSize=" + sessionConfig.getTransactBufferSize() + //
+                    ", transactTimeout=" + sessionConfig.getTransactTimeout() + //
+                    ", soTimeout=" + sessionConfig.getSoTimeout() + //
+                    ", encryptData=" + sessionConfig.isEncryptData());
+        }
+        final Connection connection;
+        try {
+            connection = client.connect(key.getHost(), port);
+        } catch (final Exception e) {
+            IOUtils.closeQuietly(client);
+            if (circuitBreaker != null) {
+                circuitBreaker.recordFailure(key);
+            }
+            throw e;
+        }
+        if (circuitBreaker != null) {
+            circuitBreaker.recordSuccess(key);
         }
-        final Connection connection = client.connect(key.getHost(), port);
         if (logger.isDebugEnabled()) {
             logger.debug("Created Connection: connected={}", connection.isConnected());
             logger.debug("The number of authentications is {}", authentications.length);
@@ -83,7 +105,7 @@ public class PooledSmbSessionFactory extends BaseKeyedPooledObjectFactory<SmbSes
                 if (logger.isDebugEnabled()) {
                     logger.debug("AuthenticationContext={}", ac);
                 }
-                return new SmbSession(connection.authenticate(ac));
+                return new SmbSession(connection.authenticate(ac), sessionConfig);
             }
         }
         IOUtils.closeQuietly(client);
@@ -95,6 +117,35 @@ public class PooledSmbSessionFactory extends BaseKeyedPooledObjectFactory<SmbSes
         return new DefaultPooledObject<>(value);
     }
 
+    /**
+     * Validates the session with its connection state and an SMB2 ECHO, when the pool is configured to
+     * test sessions on borrow, on return or while idle.
+     */
+    @Override
+    public boolean validateObject(final SmbSessionKey key, final PooledObject<SmbSession> p) {
+        final boolean alive = p.getObject().isAlive(validationTimeout);
+        if (!alive && logger.isDebugEnabled()) {
+            logger.debug("invalid session: key={}, session={}", key, p.getObject());
+        }
+        return alive;
+    }
+
+    /**
+     * Rejects a pooled session whose timeouts are out of date with the timeout policy, so that the pool
+     * destroys it and the borrower gets a session with the current timeouts.
+     */
+    @Override
+    public void activateObject(final SmbSessionKey key, final PooledObject<SmbSession> p) throws Exception {
+        final SmbConfig sessionConfig = p.getObject().getConfig();
+        if (timeoutPolicy != null && sessionConfig != null && timeoutPolicy.isOutdated(key, sessionConfig, config)) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("outdated session: key={}, readTimeout={}, transactTimeout={}", key, sessionConfig.getReadTimeout(),
+                        sessionConfig.getTransactTimeout());
+            }
+            throw new IllegalStateException("The timeouts of the session for " + key + " are out of date.");
+        }
+    }
+
     @Override
     public void destroyObject(final SmbSessionKey key, final PooledObject<SmbSession> p) throws Exception {
         if (logger.isDebugEnabled()) {
@@ -103,4 +154,45 @@ public class PooledSmbSessionFactory extends BaseKeyedPooledObjectFactory<SmbSes
         p.getObject().close();
     }
 
+    /**
+     * Fails fast if the circuit for the key is open.
+     *
+     * @param key the session key
+     */
+    public void checkAvailability(final SmbSessionKey key) {
+        if (circuitBreaker != null) {
+            circuitBreaker.checkState(key);
+        }
+    }
+
+    public SmbCircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public void setCircuitBreaker(final SmbCircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    public long getValidationTimeout() {
+        return validationTimeout;
+    }
+
+    /**
+     * @param validationTimeout the time in milliseconds to wait for the response of a validation ECHO
+     */
+    public void setValidationTimeout(final long validationTimeout) {
+        this.validationTimeout = validationTimeout;
+    }
+
+    public SmbTimeoutPolicy getTimeoutPolicy() {
+        return timeoutPolicy;
+    }
+
+    /**
+     * @param timeoutPolicy the policy deriving the timeouts of new sessions from observed latencies, or null
+     */
+    public void setTimeoutPolicy(final SmbTimeoutPolicy timeoutPolicy) {
+        this.timeoutPolicy = timeoutPolicy;
+    }
+
 }
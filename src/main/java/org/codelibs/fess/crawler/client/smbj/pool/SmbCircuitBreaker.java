@@ -0,0 +1,156 @@
+/*
+ * Copyright 2012-2024 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.client.smbj.pool;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.codelibs.fess.crawler.client.smbj.SmbCircuitOpenException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tracks connection failures per {@link SmbSessionKey} and rejects requests to hosts
+ * that keep failing until a cool-down period has elapsed.
+ */
+public class SmbCircuitBreaker {
+    private static final Logger logger = LoggerFactory.getLogger(SmbCircuitBreaker.class);
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    protected final int failureThreshold;
+
+    protected final long coolDown;
+
+    protected final Map<SmbSessionKey, Circuit> circuitMap = new ConcurrentHashMap<>();
+
+    /**
+     * @param failureThreshold
+     *            the number of consecutive failures which opens the circuit
+     * @param coolDown
+     *            the time in milliseconds until an open circuit lets a trial request through
+     */
+    public SmbCircuitBreaker(final int failureThreshold, final long coolDown) {
+        this.failureThreshold = failureThreshold;
+        this.coolDown = coolDown;
+    }
+
+    /**
+     * Checks if a request to the host can proceed without reserving the half-open trial.
+     */
+    public void checkState(final SmbSessionKey key) {
+        final Circuit circuit = circuitMap.get(key);
+        if (circuit != null && !circuit.isCallPermitted(coolDown, false)) {
+            throw new SmbCircuitOpenException("Circuit is open for " + key);
+        }
+    }
+
+    /**
+     * Checks if a connection to the host can be attempted, and reserves the trial request in half-open state.
+     */
+    public void acquirePermission(final SmbSessionKey key) {
+        final Circuit circuit = circuitMap.computeIfAbsent(key, k -> new Circuit());
+        if (!circuit.isCallPermitted(coolDown, true)) {
+            throw new SmbCircuitOpenException("Circuit is open for " + key);
+        }
+    }
+
+    public void recordSuccess(final SmbSessionKey key) {
+        final Circuit circuit = circuitMap.get(key);
+        if (circuit != null && circuit.onSuccess() && logger.isInfoEnabled()) {
+            logger.info("Circuit is closed for {}", key);
+        }
+    }
+
+    public void recordFailure(final SmbSessionKey key) {
+        final Circuit circuit = circuitMap.computeIfAbsent(key, k -> new Circuit());
+        if (circuit.onFailure(failureThreshold) && logger.isWarnEnabled()) {
+            logger.warn("Circuit is open for {}: the next attempt is allowed after {}ms", key, coolDown);
+        }
+    }
+
+    public State getState(final SmbSessionKey key) {
+        final Circuit circuit = circuitMap.get(key);
+        if (circuit == null) {
+            return State.CLOSED;
+        }
+        return circuit.getState();
+    }
+
+    protected static class Circuit {
+        private State state = State.CLOSED;
+
+        private int failures;
+
+        private long openedTime;
+
+        private boolean trialInProgress;
+
+        synchronized boolean isCallPermitted(final long coolDown, final boolean reserveTrial) {
+            switch (state) {
+            case OPEN:
+                if (System.currentTimeMillis() - openedTime < coolDown) {
+                    return false;
+                }
+                if (reserveTrial) {
+                    state = State.HALF_OPEN;
+                    trialInProgress = true;
+                }
+                return true;
+            case HALF_OPEN:
+                if (trialInProgress) {
+                    return false;
+                }
+                if (reserveTrial) {
+                    trialInProgress = true;
+                }
+                return true;
+            default:
+                return true;
+            }
+        }
+
+        synchronized boolean onSuccess() {
+            final boolean closed = state != State.CLOSED;
+            state = State.CLOSED;
+            failures = 0;
+            trialInProgress = false;
+            return closed;
+        }
+
+        synchronized boolean onFailure(final int failureThreshold) {
+            trialInProgress = false;
+            if (state == State.HALF_OPEN) {
+                state = State.OPEN;
+                openedTime = System.currentTimeMillis();
+                return true;
+            }
+            failures++;
+            if (state == State.CLOSED && failures >= failureThreshold) {
+                state = State.OPEN;
+                openedTime = System.currentTimeMillis();
+                return true;
+            }
+            return false;
+        }
+
+        synchronized State getState() {
+            return state;
+        }
+    }
+}
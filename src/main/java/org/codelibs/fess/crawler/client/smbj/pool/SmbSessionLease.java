@@ -0,0 +1,213 @@
+/*
+ * Copyright 2012-2024 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.client.smbj.pool;
+
+import java.io.Closeable;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.pool2.impl.GenericKeyedObjectPool;
+import org.codelibs.fess.crawler.client.smbj.SmbExceptionUtil;
+import org.codelibs.fess.crawler.client.smbj.SmbSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.hierynomus.smbj.share.Share;
+
+/**
+ * Holds one pooled session and its tree connects for the current thread, so that consecutive requests to the
+ * same host do not borrow a session and connect the share each time. While a lease is active,
+ * {@link SmbSessionLoader} hands out the leased session for its host, and a session broken by a failure is
+ * replaced by a new one on the next use. The session is returned to the pool when the lease is closed.
+ * Opening a lease for the same host again on the thread returns the active lease, which is released by the
+ * outermost close, and a lease for another host is active until it is closed, after which the outer lease is
+ * active again. Nested leases must be closed in the reverse order.
+ */
+public class SmbSessionLease implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(SmbSessionLease.class);
+
+    private static final ThreadLocal<SmbSessionLease> CURRENT = new ThreadLocal<>();
+
+    private final SmbSessionKey sessionKey;
+
+    private final GenericKeyedObjectPool<SmbSessionKey, SmbSession> sessionPool;
+
+    private final Map<String, Share> shareMap = new HashMap<>();
+
+    private final SmbSessionLease outer;
+
+    private int depth;
+
+    private SmbSession session;
+
+    private int borrowCount;
+
+    private int connectCount;
+
+    private SmbSessionLease(final SmbSessionKey sessionKey, final GenericKeyedObjectPool<SmbSessionKey, SmbSession> sessionPool,
+            final SmbSessionLease outer) {
+        this.sessionKey = sessionKey;
+        this.sessionPool = sessionPool;
+        this.outer = outer;
+    }
+
+    /**
+     * Starts a lease on the current thread, or reuses the active lease if it is for the same host and pool.
+     * The session is borrowed when it is used first.
+     *
+     * @param sessionKey the host of the session
+     * @param sessionPool the session pool
+     * @return the lease, which must be closed by the current thread
+     */
+    public static SmbSessionLease open(final SmbSessionKey sessionKey,
+            final GenericKeyedObjectPool<SmbSessionKey, SmbSession> sessionPool) {
+        final SmbSessionLease current = CURRENT.get();
+        if (current != null && current.sessionKey.equals(sessionKey) && current.sessionPool == sessionPool) {
+            current.depth++;
+            return current;
+        }
+        final SmbSessionLease lease = new SmbSessionLease(sessionKey, sessionPool, current);
+        CURRENT.set(lease);
+        return lease;
+    }
+
+    /**
+     * @param sessionKey the host of the session
+     * @return the lease of the current thread for the host, or null
+     */
+    public static SmbSessionLease current(final SmbSessionKey sessionKey) {
+        final SmbSessionLease lease = CURRENT.get();
+        if (lease == null || !lease.sessionKey.equals(sessionKey)) {
+            return null;
+        }
+        return lease;
+    }
+
+    SmbSession getSession() throws Exception {
+        if (session == null) {
+            if (sessionPool.getFactory() instanceof final PooledSmbSessionFactory factory) {
+                factory.checkAvailability(sessionKey);
+            }
+            session = sessionPool.borrowObject(sessionKey);
+            borrowCount++;
+        }
+        return session;
+    }
+
+    /**
+     * @param session the session
+     * @return true if the session is the leased one
+     */
+    public boolean owns(final SmbSession session) {
+        return session != null && session == this.session;
+    }
+
+    /**
+     * @param shareName the share name
+     * @return the tree connect of the leased session, which must not be closed by the caller
+     */
+    public Share connectShare(final String shareName) {
+        Share share = shareMap.get(shareName);
+        if (share == null || !share.isConnected()) {
+            share = session.connectShare(shareName);
+            shareMap.put(shareName, share);
+            connectCount++;
+        }
+        return share;
+    }
+
+    /**
+     * Drops the leased session if the exception shows that it is broken.
+     *
+     * @param e the exception thrown while using the session
+     */
+    void release(final Throwable e) {
+        if (session != null && SmbExceptionUtil.isSessionBroken(e)) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Dropping the leased session for {}", sessionKey, e);
+            }
+            invalidate();
+        }
+    }
+
+    /**
+     * Removes the leased session from the pool and closes it, so that a new session is borrowed on the next use.
+     */
+    void invalidate() {
+        if (session == null) {
+            return;
+        }
+        shareMap.clear();
+        try {
+            sessionPool.invalidateObject(sessionKey, session);
+        } catch (final Exception ex) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Failed to invalidate the session for {}", sessionKey, ex);
+            }
+            IOUtils.closeQuietly(session);
+        }
+        session = null;
+    }
+
+    /**
+     * @return the number of sessions borrowed by this lease
+     */
+    public int getBorrowCount() {
+        return borrowCount;
+    }
+
+    /**
+     * @return the number of tree connects made by this lease
+     */
+    public int getConnectCount() {
+        return connectCount;
+    }
+
+    @Override
+    public void close() {
+        if (depth > 0) {
+            depth--;
+            return;
+        }
+        if (CURRENT.get() == this) {
+            if (outer != null) {
+                CURRENT.set(outer);
+            } else {
+                CURRENT.remove();
+            }
+        }
+        for (final Share share : shareMap.values()) {
+            try {
+                share.close();
+            } catch (final Exception e) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Failed to close {}", share, e);
+                }
+            }
+        }
+        shareMap.clear();
+        if (session != null) {
+            sessionPool.returnObject(sessionKey, session);
+            session = null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SmbSessionLease [sessionKey=" + sessionKey + ", borrowed=" + borrowCount + ", connected=" + connectCount + "]";
+    }
+}
@@ -15,10 +15,15 @@
  */
 package org.codelibs.fess.crawler.client.smbj.pool;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.pool2.impl.GenericKeyedObjectPool;
+import org.codelibs.fess.crawler.client.smbj.SmbExceptionUtil;
 import org.codelibs.fess.crawler.client.smbj.SmbSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class SmbSessionLoader {
+    private static final Logger logger = LoggerFactory.getLogger(SmbSessionLoader.class);
 
     private SmbSessionKey sessionKey;
 
@@ -39,13 +44,71 @@ public class SmbSessionLoader {
         if (session != null) {
             return session;
         }
+        final SmbSessionLease lease = SmbSessionLease.current(sessionKey);
+        if (lease != null) {
+            return lease.getSession();
+        }
+        if (sessionPool.getFactory() instanceof final PooledSmbSessionFactory factory) {
+            factory.checkAvailability(sessionKey);
+        }
         return sessionPool.borrowObject(sessionKey);
     }
 
     public void returnObject(final SmbSession session) {
-        if (session == null) {
+        if (this.session == null && session != null && !isLeased(session)) {
             sessionPool.returnObject(sessionKey, session);
         }
     }
 
+    /**
+     * Removes a broken session from the pool and closes it.
+     *
+     * @param session the borrowed session
+     */
+    public void invalidateObject(final SmbSession session) {
+        if (this.session != null || session == null) {
+            return;
+        }
+        if (isLeased(session)) {
+            SmbSessionLease.current(sessionKey).invalidate();
+            return;
+        }
+        try {
+            sessionPool.invalidateObject(sessionKey, session);
+        } catch (final Exception e) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Failed to invalidate the session for {}", sessionKey, e);
+            }
+            IOUtils.closeQuietly(session);
+        }
+    }
+
+    /**
+     * Returns the session to the pool, or invalidates it if the exception shows that it is broken.
+     *
+     * @param session the borrowed session
+     * @param e the exception thrown while using the session
+     */
+    public void releaseObject(final SmbSession session, final Throwable e) {
+        if (isLeased(session)) {
+            SmbSessionLease.current(sessionKey).release(e);
+        } else if (SmbExceptionUtil.isSessionBroken(e)) {
+            invalidateObject(session);
+        } else {
+            returnObject(session);
+        }
+    }
+
+    /**
+     * @param session the borrowed session
+     * @return true if the session is leased to the current thread, so that it is kept after use
+     */
+    public boolean isLeased(final SmbSession session) {
+        if (this.session != null || session == null) {
+            return false;
+        }
+        final SmbSessionLease lease = SmbSessionLease.current(sessionKey);
+        return lease != null && lease.owns(session);
+    }
+
 }
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2012-2024 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.client.smbj.pool;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.hierynomus.smbj.SmbConfig;
+
+/**
+ * Tracks request latencies per {@link SmbSessionKey} and operation, and derives the timeouts of new
+ * sessions to the host from them: the percentile of the recent latencies multiplied by a factor,
+ * bounded by a floor and by the static timeouts of the base configuration. Failed and timed-out requests
+ * are recorded with their elapsed time, so that the timeouts grow when a host slows down, and pooled
+ * sessions whose timeouts are out of date are replaced by new ones.
+ */
+public class SmbTimeoutPolicy {
+    private static final Logger logger = LoggerFactory.getLogger(SmbTimeoutPolicy.class);
+
+    public enum Operation {
+        /** reads of file content */
+        READ,
+        /** opens, queries and other requests */
+        TRANSACT
+    }
+
+    protected final double percentile;
+
+    protected final double factor;
+
+    protected final long floor;
+
+    protected final int windowSize;
+
+    protected final int minSamples;
+
+    protected final Map<SmbSessionKey, LatencyWindow[]> windowMap = new ConcurrentHashMap<>();
+
+    /**
+     * @param percentile the percentile of the latencies, such as 0.99
+     * @param factor the multiplier of the percentile
+     * @param floor the minimum timeout in milliseconds
+     * @param windowSize the number of recent latencies kept per host and operation
+     * @param minSamples the number of latencies needed before the static timeout is replaced
+     */
+    public SmbTimeoutPolicy(final double percentile, final double factor, final long floor, final int windowSize, final int minSamples) {
+        this.percentile = percentile;
+        this.factor = factor;
+        this.floor = floor;
+        this.windowSize = windowSize;
+        this.minSamples = minSamples;
+    }
+
+    /**
+     * @param key the host
+     * @param operation the operation
+     * @param latency the latency in milliseconds
+     */
+    public void record(final SmbSessionKey key, final Operation operation, final long latency) {
+        final LatencyWindow[] windows = windowMap.computeIfAbsent(key, k -> {
+            final LatencyWindow[] values = new LatencyWindow[Operation.values().length];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = new LatencyWindow(windowSize);
+            }
+            return values;
+        });
+        windows[operation.ordinal()].add(latency);
+    }
+
+    /**
+     * @param key the host
+     * @param operation the operation
+     * @return the latency at the percentile in milliseconds, or -1 if there are not enough samples
+     */
+    public long getLatency(final SmbSessionKey key, final Operation operation) {
+        final LatencyWindow[] windows = windowMap.get(key);
+        if (windows == null) {
+            return -1L;
+        }
+        return windows[operation.ordinal()].getPercentile(percentile, minSamples);
+    }
+
+    /**
+     * @param key the host
+     * @param operation the operation
+     * @param ceiling the static timeout in milliseconds, which is also the upper bound
+     * @return the timeout in milliseconds
+     */
+    public long getTimeout(final SmbSessionKey key, final Operation operation, final long ceiling) {
+        final long latency = getLatency(key, operation);
+        if (latency < 0) {
+            return ceiling;
+        }
+        final long timeout = Math.max(floor, (long) Math.ceil(latency * factor));
+        return ceiling > 0 ? Math.min(timeout, ceiling) : timeout;
+    }
+
+    /**
+     * @param key the host
+     * @param config the base configuration with the static timeouts
+     * @return the configuration of a new session to the host
+     */
+    public SmbConfig getConfig(final SmbSessionKey key, final SmbConfig config) {
+        final long readTimeout = getTimeout(key, Operation.READ, config.getReadTimeout());
+        final long transactTimeout = getTimeout(key, Operation.TRANSACT, config.getTransactTimeout());
+        if (readTimeout == config.getReadTimeout() && transactTimeout == config.getTransactTimeout()) {
+            return config;
+        }
+        final SmbConfig.Builder builder = SmbConfig.builder(config)//
+                .withReadTimeout(readTimeout, TimeUnit.MILLISECONDS)//
+                .withTransactTimeout(transactTimeout, TimeUnit.MILLISECONDS);
+        if (config.getSoTimeout() > 0) {
+            builder.withSoTimeout(Math.min(config.getSoTimeout(), Math.max(readTimeout, transactTimeout)), TimeUnit.MILLISECONDS);
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("Adaptive timeouts for {}: readTimeout={}, transactTimeout={}", key, readTimeout, transactTimeout);
+        }
+        return builder.build();
+    }
+
+    /**
+     * @param key the host
+     * @param sessionConfig the configuration of a session to the host
+     * @param config the base configuration with the static timeouts
+     * @return true if a timeout of the session is shorter than the current one or more than twice as long
+     */
+    public boolean isOutdated(final SmbSessionKey key, final SmbConfig sessionConfig, final SmbConfig config) {
+        return isOutdated(sessionConfig.getReadTimeout(), getTimeout(key, Operation.READ, config.getReadTimeout()))
+                || isOutdated(sessionConfig.getTransactTimeout(), getTimeout(key, Operation.TRANSACT, config.getTransactTimeout()));
+    }
+
+    private static boolean isOutdated(final long sessionTimeout, final long timeout) {
+        if (sessionTimeout <= 0 || timeout <= 0) {
+            // 0 is no limit
+            return sessionTimeout != timeout;
+        }
+        // the tolerance keeps sessions from being replaced on every small change
+        return sessionTimeout < timeout || sessionTimeout > 2 * timeout;
+    }
+
+    protected static class LatencyWindow {
+        private final long[] values;
+
+        private int count;
+
+        private int next;
+
+        LatencyWindow(final int size) {
+            values = new long[size];
+        }
+
+        synchronized void add(final long value) {
+            values[next] = value;
+            next = (next + 1) % values.length;
+            if (count < values.length) {
+                count++;
+            }
+        }
+
+        synchronized long getPercentile(final double percentile, final int minSamples) {
+            if (count == 0 || count < minSamples) {
+                return -1L;
+            }
+            final long[] sorted = Arrays.copyOf(values, count);
+            Arrays.sort(sorted);
+            final int index = (int) Math.ceil(percentile * count) - 1;
+            return sorted[Math.max(0, Math.min(count - 1, index))];
+        }
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2012-2024 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.client.smbj;
+
+import org.dbflute.utflute.core.PlainTestCase;
+
+import com.hierynomus.msdtyp.SID;
+import com.hierynomus.msdtyp.SID.SidType;
+
+public class SidEntryTest extends PlainTestCase {
+
+    public void test_of() {
+        final SID sid = SID.fromString("S-1-5-21-3623811015-3361044348-30300820-1013");
+        final SidEntry entry = SidEntry.of(sid, SidType.SID_TYPE_USER, null, null);
+        assertEquals("S-1-5-21-3623811015-3361044348-30300820-1013", entry.getSidString());
+        assertEquals(1013L, entry.getRid());
+        assertEquals(3623811015L, entry.getSubAuthority(1));
+        assertEquals("S-1-5-21-3623811015-3361044348-30300820-1013:SID_TYPE_USER", entry.toString());
+        assertNull(entry.getAccountName());
+    }
+
+    public void test_intern() {
+        final SID sid = SID.fromString("S-1-5-21-1-2-3-1104");
+        final SidEntry unresolved = SidEntry.of(sid, SidType.SID_TYPE_USER, null, null);
+        assertSame(unresolved, SidEntry.find(SID.fromString("S-1-5-21-1-2-3-1104")));
+        assertSame(unresolved, SidEntry.of(SID.fromString("S-1-5-21-1-2-3-1104"), SidType.SID_TYPE_USER, null, null));
+
+        final SidEntry resolved = SidEntry.of(sid, SidType.SID_TYPE_USER, "taro", "EXAMPLE");
+        assertNotSame(unresolved, resolved);
+        assertEquals(unresolved, resolved);
+        assertEquals("taro", resolved.getAccountName());
+        assertSame(resolved, SidEntry.find(sid));
+        assertSame(resolved, SidEntry.of(sid, SidType.SID_TYPE_USER, null, null));
+        assertEquals("S-1-5-21-1-2-3-1104(taro):SID_TYPE_USER", resolved.toString());
+    }
+}
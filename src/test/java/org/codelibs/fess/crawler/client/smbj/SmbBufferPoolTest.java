@@ -0,0 +1,68 @@
+/*
+ * Copyright 2012-2024 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.client.smbj;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.codelibs.core.io.InputStreamUtil;
+import org.dbflute.utflute.core.PlainTestCase;
+
+public class SmbBufferPoolTest extends PlainTestCase {
+
+    public void test_acquireAndRelease() {
+        final SmbBufferPool pool = new SmbBufferPool(1024 * 1024, true);
+        final ByteBuffer buffer = pool.acquire(10000);
+        assertTrue(buffer.isDirect());
+        assertEquals(16384, buffer.capacity());
+        assertEquals(10000, buffer.limit());
+        assertEquals(1, pool.getAllocatedCount());
+
+        pool.release(buffer);
+        assertEquals(16384, pool.getIdleBytes());
+        final ByteBuffer reused = pool.acquire(9000);
+        assertSame(buffer, reused);
+        assertEquals(0, reused.position());
+        assertEquals(9000, reused.limit());
+        assertEquals(1, pool.getReusedCount());
+        assertEquals(0, pool.getIdleBytes());
+
+        assertEquals(8192, pool.acquire(1).capacity());
+    }
+
+    public void test_maxIdleBytes() {
+        final SmbBufferPool pool = new SmbBufferPool(20000, false);
+        final ByteBuffer buffer1 = pool.acquire(16384);
+        final ByteBuffer buffer2 = pool.acquire(16384);
+        pool.release(buffer1);
+        pool.release(buffer2);
+        assertEquals(16384, pool.getIdleBytes());
+    }
+
+    public void test_responseData() throws Exception {
+        final SmbBufferPool pool = new SmbBufferPool(1024 * 1024, true);
+        final ByteBuffer buffer = pool.acquire(5);
+        buffer.put("hello".getBytes(StandardCharsets.UTF_8)).flip();
+        try (SmbResponseData responseData = new SmbResponseData()) {
+            responseData.setResponseBody(buffer, pool);
+            assertTrue(responseData.hasResponseBody());
+            assertEquals("hello", new String(InputStreamUtil.getBytes(responseData.getResponseBody()), StandardCharsets.UTF_8));
+            assertEquals("hello", new String(InputStreamUtil.getBytes(responseData.getResponseBody()), StandardCharsets.UTF_8));
+            assertEquals(0, pool.getIdleBytes());
+        }
+        assertEquals(8192, pool.getIdleBytes());
+    }
+}
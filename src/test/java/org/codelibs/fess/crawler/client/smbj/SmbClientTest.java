@@ -15,12 +15,18 @@
  */
 package org.codelibs.fess.crawler.client.smbj;
 
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
 
 import org.codelibs.core.io.InputStreamUtil;
 import org.codelibs.fess.crawler.client.smb.SmbAuthentication;
+import org.codelibs.fess.crawler.client.smbj.pool.SmbSessionKey;
 import org.codelibs.fess.crawler.container.StandardCrawlerContainer;
 import org.codelibs.fess.crawler.entity.RequestData;
 import org.codelibs.fess.crawler.entity.ResponseData;
@@ -109,6 +115,64 @@ public class SmbClientTest extends PlainTestCase {
         }
     }
 
+    public void test_doGet_dir_paging() throws Exception {
+        final Integer port = server.getFirstMappedPort();
+        final String prefix = "smb3://" + server.getHost() + ":" + port;
+        for (final int cursorCacheSize : new int[] { 1000, 0 }) {
+            try (SmbClient client = crawlerContainer.getComponent("smbClient")) {
+                final Map<String, Object> params = new HashMap<>();
+                final SmbAuthentication smbAuthentication = new SmbAuthentication();
+                smbAuthentication.setServer(server.getHost());
+                smbAuthentication.setPort(port);
+                smbAuthentication.setUsername("alice");
+                smbAuthentication.setPassword("alipass");
+                smbAuthentication.setDomain("WORKGROUP");
+                params.put(SmbClient.SMB_AUTHENTICATIONS_PROPERTY, new SmbAuthentication[] { smbAuthentication });
+                client.setInitParameterMap(params);
+                client.setListingPageSize(1);
+                client.setListingCursorCacheSize(cursorCacheSize);
+
+                final List<String> children = new ArrayList<>();
+                String nextUrl = null;
+                try {
+                    client.doGet(prefix + "/Home/");
+                    fail();
+                } catch (final ChildUrlsException e) {
+                    final List<String> urls = e.getChildUrlList().stream().map(RequestData::getUrl).toList();
+                    assertEquals(2, urls.size());
+                    for (final String url : urls) {
+                        if (url.contains("?")) {
+                            nextUrl = url;
+                        } else {
+                            children.add(url);
+                        }
+                    }
+                }
+                assertEquals(prefix + "/Home/?" + SmbClient.LISTING_OFFSET_PARAM + "=1", nextUrl);
+                assertEquals(1, children.size());
+                if (cursorCacheSize > 0) {
+                    assertEquals(1, client.getListingCursorCache().size());
+                } else {
+                    assertNull(client.getListingCursorCache());
+                }
+
+                try {
+                    client.doGet(nextUrl);
+                    fail();
+                } catch (final ChildUrlsException e) {
+                    final List<String> urls = e.getChildUrlList().stream().map(RequestData::getUrl).toList();
+                    assertEquals(1, urls.size());
+                    children.addAll(urls);
+                }
+                Collections.sort(children);
+                assertEquals(List.of(prefix + "/Home/folder4", prefix + "/Home/text4.txt"), children);
+                if (cursorCacheSize > 0) {
+                    assertEquals(0, client.getListingCursorCache().size());
+                }
+            }
+        }
+    }
+
     public void test_doGet_file() throws Exception {
         final Integer port = server.getFirstMappedPort();
         try (SmbClient client = crawlerContainer.getComponent("smbClient")) {
@@ -132,11 +196,199 @@ public class SmbClientTest extends PlainTestCase {
             final Map<String, Object> metadata = responseData.getMetaDataMap();
             final String[] ownerAttributes = (String[]) metadata.get(SmbClient.SMB_OWNER_ATTRIBUTES);
             assertEquals(1, ownerAttributes.length);
-            final SID[] allowSids = (SID[]) metadata.get(SmbClient.SMB_ALLOWED_SID_ENTRIES);
+            final SidEntry[] allowSids = (SidEntry[]) metadata.get(SmbClient.SMB_ALLOWED_SID_ENTRIES);
             assertEquals(3, allowSids.length);
-            final SID[] denySids = (SID[]) metadata.get(SmbClient.SMB_DENIED_SID_ENTRIES);
+            final SidEntry[] denySids = (SidEntry[]) metadata.get(SmbClient.SMB_DENIED_SID_ENTRIES);
             assertEquals(0, denySids.length);
             assertEquals("test 4", new String(InputStreamUtil.getBytes(responseData.getResponseBody())).trim());
         }
     }
+
+    public void test_doGet_file_digest() throws Exception {
+        final Integer port = server.getFirstMappedPort();
+        try (SmbClient client = crawlerContainer.getComponent("smbClient")) {
+            final Map<String, Object> params = new HashMap<>();
+            final SmbAuthentication smbAuthentication = new SmbAuthentication();
+            smbAuthentication.setServer(server.getHost());
+            smbAuthentication.setPort(port);
+            smbAuthentication.setUsername("alice");
+            smbAuthentication.setPassword("alipass");
+            smbAuthentication.setDomain("WORKGROUP");
+            params.put(SmbClient.SMB_AUTHENTICATIONS_PROPERTY, new SmbAuthentication[] { smbAuthentication });
+            client.setInitParameterMap(params);
+            client.setContentDigestAlgorithm("SHA-256");
+            final ResponseData responseData = client.doGet("smb3://" + server.getHost() + ":" + port + "/Home/text4.txt");
+            assertEquals(200, responseData.getHttpStatusCode());
+            final byte[] content = InputStreamUtil.getBytes(responseData.getResponseBody());
+            final String expected = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+            assertEquals(expected, responseData.getMetaDataMap().get(SmbClient.SMB_CONTENT_DIGEST));
+        }
+    }
+
+    public void test_doHead_doGet() throws Exception {
+        final Integer port = server.getFirstMappedPort();
+        try (SmbClient client = crawlerContainer.getComponent("smbClient")) {
+            final Map<String, Object> params = new HashMap<>();
+            final SmbAuthentication smbAuthentication = new SmbAuthentication();
+            smbAuthentication.setServer(server.getHost());
+            smbAuthentication.setPort(port);
+            smbAuthentication.setUsername("alice");
+            smbAuthentication.setPassword("alipass");
+            smbAuthentication.setDomain("WORKGROUP");
+            params.put(SmbClient.SMB_AUTHENTICATIONS_PROPERTY, new SmbAuthentication[] { smbAuthentication });
+            client.setInitParameterMap(params);
+            client.setHeadCacheSize(100);
+            final String url = "smb3://" + server.getHost() + ":" + port + "/Home/text4.txt";
+            final ResponseData headData = client.doHead(url);
+            final ResponseData getData = client.doGet(url);
+            assertEquals(1L, client.getHeadCache().getHitCount());
+            assertEquals(200, getData.getHttpStatusCode());
+            assertEquals(headData.getLastModified(), getData.getLastModified());
+            assertEquals(3, ((SidEntry[]) getData.getMetaDataMap().get(SmbClient.SMB_ALLOWED_SID_ENTRIES)).length);
+            assertEquals("test 4", new String(InputStreamUtil.getBytes(getData.getResponseBody())).trim());
+        }
+    }
+
+    public void test_sessionValidation() throws Exception {
+        final Integer port = server.getFirstMappedPort();
+        try (SmbClient client = crawlerContainer.getComponent("smbClient")) {
+            final Map<String, Object> params = new HashMap<>();
+            final SmbAuthentication smbAuthentication = new SmbAuthentication();
+            smbAuthentication.setServer(server.getHost());
+            smbAuthentication.setPort(port);
+            smbAuthentication.setUsername("alice");
+            smbAuthentication.setPassword("alipass");
+            smbAuthentication.setDomain("WORKGROUP");
+            params.put(SmbClient.SMB_AUTHENTICATIONS_PROPERTY, new SmbAuthentication[] { smbAuthentication });
+            client.setInitParameterMap(params);
+            client.setSessionKeepAliveInterval(100L);
+            client.doGet("smb3://" + server.getHost() + ":" + port + "/Home/text4.txt");
+            final SmbSessionKey key = new SmbSessionKey(server.getHost(), port);
+            final SmbSession session = client.sessionPool.borrowObject(key);
+            try {
+                assertTrue(session.isAlive(5000L));
+            } finally {
+                client.sessionPool.returnObject(key, session);
+            }
+            Thread.sleep(500L);
+            assertEquals(0L, client.sessionPool.getDestroyedByEvictorCount());
+        }
+    }
+
+    public void test_doGet_probe() throws Exception {
+        final Integer port = server.getFirstMappedPort();
+        try (SmbClient client = crawlerContainer.getComponent("smbClient")) {
+            final Map<String, Object> params = new HashMap<>();
+            final SmbAuthentication smbAuthentication = new SmbAuthentication();
+            smbAuthentication.setServer(server.getHost());
+            smbAuthentication.setPort(port);
+            smbAuthentication.setUsername("alice");
+            smbAuthentication.setPassword("alipass");
+            smbAuthentication.setDomain("WORKGROUP");
+            params.put(SmbClient.SMB_AUTHENTICATIONS_PROPERTY, new SmbAuthentication[] { smbAuthentication });
+            client.setInitParameterMap(params);
+            client.setStatusProbe(true);
+            assertEquals(200, client.doGet("smb3://" + server.getHost() + ":" + port + "/Home/text4.txt").getHttpStatusCode());
+            assertEquals(404, client.doGet("smb3://" + server.getHost() + ":" + port + "/Home/none.txt").getHttpStatusCode());
+            assertEquals(Long.valueOf(1L), client.getProbeStatusCounts().get(SmbProbeResult.Status.FILE));
+            assertEquals(Long.valueOf(1L), client.getProbeStatusCounts().get(SmbProbeResult.Status.NOT_FOUND));
+        }
+    }
+
+    public void test_doGet_serverRoot() throws Exception {
+        final Integer port = server.getFirstMappedPort();
+        try (SmbClient client = crawlerContainer.getComponent("smbClient")) {
+            final Map<String, Object> params = new HashMap<>();
+            final SmbAuthentication smbAuthentication = new SmbAuthentication();
+            smbAuthentication.setServer(server.getHost());
+            smbAuthentication.setPort(port);
+            smbAuthentication.setUsername("alice");
+            smbAuthentication.setPassword("alipass");
+            smbAuthentication.setDomain("WORKGROUP");
+            params.put(SmbClient.SMB_AUTHENTICATIONS_PROPERTY, new SmbAuthentication[] { smbAuthentication });
+            client.setInitParameterMap(params);
+            try {
+                client.doGet("smb3://" + server.getHost() + ":" + port + "/");
+                fail();
+            } catch (final ChildUrlsException e) {
+                final List<String> urls = e.getChildUrlList().stream().map(RequestData::getUrl).toList();
+                assertTrue(urls.contains("smb3://" + server.getHost() + ":" + port + "/Home/"));
+                assertTrue(urls.contains("smb3://" + server.getHost() + ":" + port + "/GuestShare/"));
+                assertFalse(urls.contains("smb3://" + server.getHost() + ":" + port + "/IPC$/"));
+            }
+        }
+    }
+
+    public void test_doGet_snapshot() throws Exception {
+        final Integer port = server.getFirstMappedPort();
+        try (SmbClient client = crawlerContainer.getComponent("smbClient")) {
+            final Map<String, Object> params = new HashMap<>();
+            final SmbAuthentication smbAuthentication = new SmbAuthentication();
+            smbAuthentication.setServer(server.getHost());
+            smbAuthentication.setPort(port);
+            smbAuthentication.setUsername("alice");
+            smbAuthentication.setPassword("alipass");
+            smbAuthentication.setDomain("WORKGROUP");
+            params.put(SmbClient.SMB_AUTHENTICATIONS_PROPERTY, new SmbAuthentication[] { smbAuthentication });
+            client.setInitParameterMap(params);
+            client.setSnapshot(SmbSnapshots.LATEST);
+            // the share has no snapshot, so it is crawled live
+            final ResponseData responseData = client.doGet("smb3://" + server.getHost() + ":" + port + "/Home/text4.txt");
+            assertEquals(200, responseData.getHttpStatusCode());
+            assertNull(responseData.getMetaDataMap().get(SmbClient.SMB_SNAPSHOT));
+        }
+    }
+
+    public void test_doHead_doGet_contentCache() throws Exception {
+        final Integer port = server.getFirstMappedPort();
+        try (SmbClient client = crawlerContainer.getComponent("smbClient")) {
+            final Map<String, Object> params = new HashMap<>();
+            final SmbAuthentication smbAuthentication = new SmbAuthentication();
+            smbAuthentication.setServer(server.getHost());
+            smbAuthentication.setPort(port);
+            smbAuthentication.setUsername("alice");
+            smbAuthentication.setPassword("alipass");
+            smbAuthentication.setDomain("WORKGROUP");
+            params.put(SmbClient.SMB_AUTHENTICATIONS_PROPERTY, new SmbAuthentication[] { smbAuthentication });
+            client.setInitParameterMap(params);
+            client.setContentCacheSize(1024 * 1024);
+            final String url = "smb3://" + server.getHost() + ":" + port + "/Home/text4.txt";
+            assertEquals(200, client.doHead(url).getHttpStatusCode());
+            final ResponseData responseData = client.doGet(url);
+            assertEquals(200, responseData.getHttpStatusCode());
+            assertEquals("test 4", new String(InputStreamUtil.getBytes(responseData.getResponseBody())).trim());
+            assertEquals(1L, client.getContentCache().getHitCount());
+        }
+    }
+
+    public void test_doGet_batch() throws Exception {
+        final Integer port = server.getFirstMappedPort();
+        try (SmbClient client = crawlerContainer.getComponent("smbClient")) {
+            final Map<String, Object> params = new HashMap<>();
+            final SmbAuthentication smbAuthentication = new SmbAuthentication();
+            smbAuthentication.setServer(server.getHost());
+            smbAuthentication.setPort(port);
+            smbAuthentication.setUsername("alice");
+            smbAuthentication.setPassword("alipass");
+            smbAuthentication.setDomain("WORKGROUP");
+            params.put(SmbClient.SMB_AUTHENTICATIONS_PROPERTY, new SmbAuthentication[] { smbAuthentication });
+            client.setInitParameterMap(params);
+            client.setBatchThreads(2);
+            final String prefix = "smb3://" + server.getHost() + ":" + port;
+            final List<SmbBatchResult> results =
+                    client.doGet(List.of(prefix + "/Home/text4.txt", prefix + "/Home/none.txt", prefix + "/Home/folder4", "invalid"));
+            assertEquals(4, results.size());
+            assertEquals(prefix + "/Home/text4.txt", results.get(0).getUrl());
+            assertEquals(200, results.get(0).getResponseData().getHttpStatusCode());
+            assertEquals("test 4", new String(InputStreamUtil.getBytes(results.get(0).getResponseData().getResponseBody())).trim());
+            assertEquals(404, results.get(1).getResponseData().getHttpStatusCode());
+            assertTrue(results.get(2).getException() instanceof ChildUrlsException);
+            assertFalse(results.get(3).isSuccess());
+            for (final SmbBatchResult result : results) {
+                if (result.getResponseData() != null) {
+                    result.getResponseData().close();
+                }
+            }
+        }
+    }
 }
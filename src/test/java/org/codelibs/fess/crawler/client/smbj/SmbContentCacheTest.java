@@ -0,0 +1,77 @@
+/*
+ * Copyright 2012-2024 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.client.smbj;
+
+import org.dbflute.utflute.core.PlainTestCase;
+
+import com.hierynomus.msdtyp.FileTime;
+import com.hierynomus.msfscc.fileinformation.FileBasicInformation;
+
+public class SmbContentCacheTest extends PlainTestCase {
+
+    public void test_getAndPut() {
+        final SmbContentCache cache = new SmbContentCache(1024, 100, 60000L);
+        final FileBasicInformation info = createInfo(1000L, 2000L);
+        final byte[] content = "test".getBytes();
+
+        assertNull(cache.get("smb://server/share/a.txt", info, content.length));
+        cache.put("smb://server/share/a.txt", info, content);
+        assertSame(content, cache.get("smb://server/share/a.txt", createInfo(1000L, 2000L), content.length));
+        assertEquals(1L, cache.getHitCount());
+        assertEquals(1L, cache.getMissCount());
+
+        // changed by a write
+        assertNull(cache.get("smb://server/share/a.txt", createInfo(1001L, 2001L), content.length));
+        assertEquals(1L, cache.getStaleCount());
+        assertEquals(0, cache.size());
+
+        // changed without a new LastWriteTime
+        cache.put("smb://server/share/a.txt", info, content);
+        assertNull(cache.get("smb://server/share/a.txt", createInfo(1000L, 2001L), content.length));
+        cache.put("smb://server/share/a.txt", info, content);
+        assertNull(cache.get("smb://server/share/a.txt", info, content.length + 1));
+        assertEquals(0L, cache.getUsedBytes());
+
+        assertFalse(cache.accepts(101));
+        cache.put("smb://server/share/b.txt", info, new byte[101]);
+        assertEquals(0, cache.size());
+    }
+
+    public void test_evict() {
+        final SmbContentCache cache = new SmbContentCache(250, 100, 60000L);
+        final FileBasicInformation info = createInfo(1000L, 2000L);
+        cache.put("smb://server/share/a.txt", info, new byte[100]);
+        cache.put("smb://server/share/b.txt", info, new byte[100]);
+        assertNotNull(cache.get("smb://server/share/a.txt", info, 100));
+        cache.put("smb://server/share/c.txt", info, new byte[100]);
+        assertEquals(2, cache.size());
+        assertEquals(200L, cache.getUsedBytes());
+        assertNull(cache.get("smb://server/share/b.txt", info, 100));
+        assertNotNull(cache.get("smb://server/share/a.txt", info, 100));
+    }
+
+    public void test_expire() {
+        final SmbContentCache cache = new SmbContentCache(1024, 100, -1L);
+        final FileBasicInformation info = createInfo(1000L, 2000L);
+        cache.put("smb://server/share/a.txt", info, new byte[10]);
+        assertNull(cache.get("smb://server/share/a.txt", info, 10));
+        assertEquals(0L, cache.getUsedBytes());
+    }
+
+    private FileBasicInformation createInfo(final long lastWriteTime, final long changeTime) {
+        return new FileBasicInformation(new FileTime(0L), new FileTime(0L), new FileTime(lastWriteTime), new FileTime(changeTime), 0L);
+    }
+}
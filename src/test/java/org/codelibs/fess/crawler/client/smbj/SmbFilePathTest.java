@@ -0,0 +1,116 @@
+/*
+ * Copyright 2012-2024 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.client.smbj;
+
+import java.lang.management.ManagementFactory;
+
+import org.codelibs.fess.crawler.exception.CrawlingAccessException;
+import org.dbflute.utflute.core.PlainTestCase;
+
+public class SmbFilePathTest extends PlainTestCase {
+
+    public void test_parse() {
+        SmbFilePath path = SmbFilePath.parse("smb://server:445/share/dir/file.txt");
+        assertEquals("smb", path.getProtocol());
+        assertEquals("server", path.getSessionKey().getHost());
+        assertEquals(445, path.getSessionKey().getPort());
+        assertEquals("share", path.getShareName());
+        assertEquals("dir/file.txt", path.getPath());
+        assertEquals("dir\\file.txt", path.getSmbPath());
+        assertEquals("smb://server:445/share/dir/file.txt", path.toString());
+
+        path = SmbFilePath.parse("smb3://server/share?smbjListingOffset=100");
+        assertEquals(-1, path.getSessionKey().getPort());
+        assertEquals("share", path.getShareName());
+        assertEquals("", path.getPath());
+        assertEquals("smb3://server/share/", path.toString());
+
+        path = SmbFilePath.parse("smb://user@[::1]:1445/share/dir/");
+        assertEquals("[::1]", path.getSessionKey().getHost());
+        assertEquals(1445, path.getSessionKey().getPort());
+        assertEquals("dir/", path.getPath());
+
+        try {
+            SmbFilePath.parse("server/share");
+            fail();
+        } catch (final CrawlingAccessException e) {
+            // ok
+        }
+    }
+
+    public void test_resolve() {
+        final SmbFilePath root = SmbFilePath.parse("smb://server:445/share");
+        final SmbFilePath dir = root.resolve("dir");
+        assertEquals("smb://server:445/share/dir", dir.toString());
+        assertEquals("dir", dir.getPath());
+        final SmbFilePath file = dir.resolve("file.txt");
+        assertEquals("smb://server:445/share/dir/file.txt", file.toString());
+        assertEquals(SmbFilePath.parse("smb://server:445/share/dir/file.txt"), file);
+        assertEquals("smb://server:445/share/dir/a.txt", SmbFilePath.parse("smb://server:445/share/dir/").resolve("a.txt").toString());
+
+        assertSame(root.getSessionKey(), SmbFilePath.parse("smb://server:445/share/other").getSessionKey());
+        assertSame(root.getShareName(), SmbFilePath.parse("smb://server:445/share/other").getShareName());
+    }
+
+    public void test_serverRoot() {
+        for (final String url : new String[] { "smb3://server:445", "smb3://server:445/", "smb3://server:445/?smbjListingOffset=10" }) {
+            final SmbFilePath root = SmbFilePath.parse(url);
+            assertTrue(root.isServerRoot());
+            assertEquals("", root.getShareName());
+            assertEquals("", root.getPath());
+            assertEquals("smb3://server:445/", root.toString());
+        }
+
+        final SmbFilePath share = SmbFilePath.parse("smb3://server:445/").resolve("share");
+        assertFalse(share.isServerRoot());
+        assertEquals("share", share.getShareName());
+        assertEquals("", share.getPath());
+        assertEquals("smb3://server:445/share/", share.toString());
+        assertEquals(SmbFilePath.parse("smb3://server:445/share/"), share);
+        assertEquals("smb3://server:445/share/dir", share.resolve("dir").toString());
+        assertFalse(SmbFilePath.parse("smb3://server:445/share").isServerRoot());
+    }
+
+    public void test_allocations() {
+        if (!(ManagementFactory.getThreadMXBean() instanceof final com.sun.management.ThreadMXBean threadBean)
+                || !threadBean.isThreadAllocatedMemorySupported()) {
+            return;
+        }
+        final SmbFilePath dir = SmbFilePath.parse("smb://server:445/share/dir");
+        final int count = 10000;
+        final long threadId = Thread.currentThread().getId();
+        for (int i = 0; i < count; i++) {
+            SmbFilePath.parse("smb://server:445/share/dir/file" + i + ".txt");
+            dir.resolve("file" + i + ".txt");
+        }
+
+        long start = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < count; i++) {
+            new SmbFile("smb://server:445/share/dir/file" + i + ".txt", null);
+        }
+        final long parsed = (threadBean.getThreadAllocatedBytes(threadId) - start) / count;
+
+        final SmbFile parent = new SmbFile(dir.toString(), null);
+        start = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < count; i++) {
+            parent.createChild(dir.resolve("file" + i + ".txt"));
+        }
+        final long resolved = (threadBean.getThreadAllocatedBytes(threadId) - start) / count;
+
+        log("allocated bytes per child: parsed=" + parsed + ", resolved=" + resolved);
+        assertTrue(resolved < parsed);
+    }
+}
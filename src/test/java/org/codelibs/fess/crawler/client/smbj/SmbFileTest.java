@@ -0,0 +1,89 @@
+/*
+ * Copyright 2012-2024 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.client.smbj;
+
+import java.util.concurrent.TimeoutException;
+
+import org.codelibs.fess.crawler.client.smbj.pool.SmbSessionKey;
+import org.codelibs.fess.crawler.client.smbj.pool.SmbTimeoutPolicy;
+import org.codelibs.fess.crawler.client.smbj.pool.SmbTimeoutPolicy.Operation;
+import org.codelibs.fess.crawler.exception.CrawlingAccessException;
+import org.dbflute.utflute.core.PlainTestCase;
+
+import com.hierynomus.msfscc.FileAttributes;
+
+public class SmbFileTest extends PlainTestCase {
+
+    private static final long FILE = FileAttributes.FILE_ATTRIBUTE_ARCHIVE.getValue();
+
+    public void test_offline() {
+        assertFalse(createFile(FILE).isOffline());
+        assertFalse(createFile(FILE | FileAttributes.FILE_ATTRIBUTE_HIDDEN.getValue()).isContentSkipped());
+        for (final long attribute : new long[] { SmbListingFilter.ATTRIBUTE_OFFLINE, SmbListingFilter.ATTRIBUTE_RECALL_ON_OPEN,
+                SmbListingFilter.ATTRIBUTE_RECALL_ON_DATA_ACCESS }) {
+            final SmbFile file = createFile(FILE | attribute);
+            assertTrue(file.isOffline());
+            assertTrue(file.isContentSkipped());
+            try {
+                file.checkReadable();
+                fail();
+            } catch (final CrawlingAccessException e) {
+                // expected
+            }
+
+            file.setRecallOfflineFiles(true);
+            assertTrue(file.isOffline());
+            assertFalse(file.isContentSkipped());
+            file.checkReadable();
+        }
+    }
+
+    public void test_timed() throws Exception {
+        final SmbTimeoutPolicy policy = new SmbTimeoutPolicy(0.99d, 1.0d, 0L, 10, 1);
+        final SmbFile file = createFile(FILE);
+        file.setTimeoutPolicy(policy);
+        final SmbSessionKey key = file.getFilePath().getSessionKey();
+
+        assertEquals("ok", file.timed(Operation.TRANSACT, diskShare -> "ok").apply(null));
+        assertTrue(policy.getLatency(key, Operation.TRANSACT) >= 0L);
+
+        // a timed-out request is recorded with its elapsed time
+        try {
+            file.timed(Operation.READ, diskShare -> {
+                Thread.sleep(50L);
+                throw new TimeoutException("timeout");
+            }).apply(null);
+            fail();
+        } catch (final TimeoutException e) {
+            // expected
+        }
+        assertTrue(policy.getLatency(key, Operation.READ) >= 50L);
+    }
+
+    private SmbFile createFile(final long attributes) {
+        return new SmbFile("smb://server/share/dir/", null) {
+            @Override
+            public long getAttributes() {
+                return attributes;
+            }
+
+            @Override
+            public boolean isFile() {
+                return (attributes & FileAttributes.FILE_ATTRIBUTE_DIRECTORY.getValue()) == 0;
+            }
+        };
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2012-2024 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.client.smbj;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.dbflute.utflute.core.PlainTestCase;
+
+public class SmbGroupSnapshotTest extends PlainTestCase {
+
+    private static final String DOMAIN = "S-1-5-21-1-2-3";
+
+    private SmbGroupSnapshot newSnapshot() {
+        final Map<String, List<String>> memberships = new HashMap<>();
+        memberships.put(DOMAIN + "-512", Arrays.asList(DOMAIN + "-1000", DOMAIN + "-1100"));
+        memberships.put(DOMAIN + "-1100", Arrays.asList(DOMAIN + "-1001", DOMAIN + "-512"));
+        memberships.put("S-1-5-32-544", Arrays.asList(DOMAIN + "-1100"));
+        return SmbGroupSnapshot.build(Arrays.asList(DOMAIN, "S-1-5-32"), memberships);
+    }
+
+    public void test_getMembers() {
+        final SmbGroupSnapshot snapshot = newSnapshot();
+        assertEquals(3, snapshot.getGroupCount());
+        assertMembers(snapshot.getMembers(DOMAIN + "-512"), DOMAIN + "-1000", DOMAIN + "-1001", DOMAIN + "-1100");
+        assertMembers(snapshot.getMembers("S-1-5-32-544"), DOMAIN + "-1000", DOMAIN + "-1001", DOMAIN + "-1100", DOMAIN + "-512");
+        assertNull(snapshot.getMembers(DOMAIN + "-1000"));
+        assertNull(snapshot.getMembers("S-1-5-21-9-9-9-512"));
+        assertTrue(snapshot.containsDomainOf(DOMAIN + "-1000"));
+        assertFalse(snapshot.containsDomainOf("S-1-5-21-9-9-9-512"));
+    }
+
+    public void test_exportAndLoad() throws Exception {
+        final SmbGroupSnapshot snapshot = newSnapshot();
+        final File file = File.createTempFile("smbj-", ".snapshot");
+        try {
+            snapshot.export(file.toPath());
+            final SmbGroupSnapshot loaded = SmbGroupSnapshot.load(file.toPath());
+            assertEquals(snapshot.getCreatedTime(), loaded.getCreatedTime());
+            assertEquals(3, loaded.getGroupCount());
+            assertMembers(loaded.getMembers("S-1-5-32-544"), DOMAIN + "-1000", DOMAIN + "-1001", DOMAIN + "-1100", DOMAIN + "-512");
+            assertTrue(loaded.containsDomainOf("S-1-5-32-545"));
+        } finally {
+            file.delete();
+        }
+    }
+
+    private void assertMembers(final String[] actual, final String... expected) {
+        final String[] sorted = actual.clone();
+        Arrays.sort(sorted);
+        Arrays.sort(expected);
+        assertEquals(Arrays.asList(expected), Arrays.asList(sorted));
+    }
+}
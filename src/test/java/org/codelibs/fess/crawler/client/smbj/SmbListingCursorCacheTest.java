@@ -0,0 +1,97 @@
+/*
+ * Copyright 2012-2024 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.client.smbj;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.dbflute.utflute.core.PlainTestCase;
+
+public class SmbListingCursorCacheTest extends PlainTestCase {
+
+    public void test_read() throws Exception {
+        final Path directory = Files.createTempDirectory("cursor");
+        try (SmbListingCursorCache cache = new SmbListingCursorCache(directory, 10)) {
+            final SmbListingCursorCache.Writer writer = cache.createWriter();
+            writer.add("a.txt", 0x20L);
+            writer.add("日本語", 0x10L);
+            writer.add("c.txt", 0x20L);
+            assertEquals(3L, writer.getCount());
+            cache.put("smb://server/share/dir/?smbjListingOffset=1", writer.toCursor());
+            assertEquals(1, cache.size());
+
+            final SmbListingCursorCache.Cursor cursor = cache.take("smb://server/share/dir/?smbjListingOffset=1");
+            assertNotNull(cursor);
+            assertNull(cache.take("smb://server/share/dir/?smbjListingOffset=1"));
+
+            final List<String> names = new ArrayList<>();
+            final List<Long> attributes = new ArrayList<>();
+            assertTrue(cursor.read(2, (name, attr) -> {
+                names.add(name);
+                attributes.add(attr);
+            }));
+            assertEquals(List.of("a.txt", "日本語"), names);
+            assertEquals(List.of(0x20L, 0x10L), attributes);
+
+            names.clear();
+            assertFalse(cursor.read(2, (name, attr) -> names.add(name)));
+            assertEquals(List.of("c.txt"), names);
+
+            cursor.close();
+            assertEquals(0L, Files.list(directory).count());
+        }
+    }
+
+    public void test_emptyWriter() throws Exception {
+        final Path directory = Files.createTempDirectory("cursor");
+        try (SmbListingCursorCache cache = new SmbListingCursorCache(directory, 10)) {
+            assertNull(cache.createWriter().toCursor());
+            cache.createWriter().discard();
+            assertEquals(0L, Files.list(directory).count());
+        }
+    }
+
+    public void test_evict() throws Exception {
+        final Path directory = Files.createTempDirectory("cursor");
+        try (SmbListingCursorCache cache = new SmbListingCursorCache(directory, 2)) {
+            for (int i = 0; i < 3; i++) {
+                final SmbListingCursorCache.Writer writer = cache.createWriter();
+                writer.add("file" + i, 0L);
+                cache.put("url" + i, writer.toCursor());
+            }
+            assertEquals(2, cache.size());
+            assertNull(cache.take("url0"));
+            assertEquals(2L, Files.list(directory).count());
+
+            cache.close();
+            assertEquals(0, cache.size());
+            assertEquals(0L, Files.list(directory).count());
+        }
+    }
+
+    public void test_deleteStaleFiles() throws Exception {
+        final Path directory = Files.createTempDirectory("cursor");
+        final Path stale = Files.createFile(directory.resolve("crawler-SmbClient-1.cursor"));
+        final Path other = Files.createFile(directory.resolve("crawler-SmbClient-2.spool"));
+        try (SmbListingCursorCache cache = new SmbListingCursorCache(directory, 10)) {
+            cache.deleteStaleFiles();
+            assertFalse(Files.exists(stale));
+            assertTrue(Files.exists(other));
+        }
+    }
+}
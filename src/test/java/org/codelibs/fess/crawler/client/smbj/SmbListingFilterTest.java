@@ -0,0 +1,82 @@
+/*
+ * Copyright 2012-2024 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.client.smbj;
+
+import org.codelibs.fess.crawler.exception.CrawlerSystemException;
+import org.dbflute.utflute.core.PlainTestCase;
+
+import com.hierynomus.msfscc.FileAttributes;
+
+public class SmbListingFilterTest extends PlainTestCase {
+
+    private static final long FILE = FileAttributes.FILE_ATTRIBUTE_ARCHIVE.getValue();
+
+    private static final long DIRECTORY = FileAttributes.FILE_ATTRIBUTE_DIRECTORY.getValue();
+
+    public void test_namePattern() {
+        final SmbListingFilter filter = new SmbListingFilter();
+        filter.setNamePattern("report-*.pdf");
+        assertTrue(filter.accept("Report-2024.PDF", FILE, 10L, 0L));
+        assertFalse(filter.accept("memo.pdf", FILE, 10L, 0L));
+        assertTrue(filter.accept("archive", DIRECTORY, 0L, 0L));
+        assertNull(filter.getSearchPattern());
+
+        filter.setApplyNamePatternToDirectories(true);
+        assertFalse(filter.accept("archive", DIRECTORY, 0L, 0L));
+        assertEquals("report-*.pdf", filter.getSearchPattern());
+    }
+
+    public void test_extensions() {
+        final SmbListingFilter filter = new SmbListingFilter();
+        filter.setIncludeExtensions("pdf, .DOCX");
+        filter.setExcludeExtensions("docx");
+        assertTrue(filter.accept("a.pdf", FILE, 10L, 0L));
+        assertFalse(filter.accept("a.docx", FILE, 10L, 0L));
+        assertFalse(filter.accept("a.txt", FILE, 10L, 0L));
+        assertTrue(filter.accept("dir.txt", DIRECTORY, 0L, 0L));
+    }
+
+    public void test_attributes() {
+        final SmbListingFilter filter = new SmbListingFilter();
+        filter.setExcludeAttributes("hidden, offline,recall_on_data_access");
+        assertTrue(filter.accept("a.txt", FILE, 10L, 0L));
+        assertFalse(filter.accept("a.txt", FILE | FileAttributes.FILE_ATTRIBUTE_HIDDEN.getValue(), 10L, 0L));
+        assertFalse(filter.accept("a.txt", FILE | SmbListingFilter.ATTRIBUTE_OFFLINE, 10L, 0L));
+        assertFalse(filter.accept("a.txt", FILE | SmbListingFilter.ATTRIBUTE_RECALL_ON_DATA_ACCESS, 10L, 0L));
+        assertFalse(filter.accept("dir", DIRECTORY | FileAttributes.FILE_ATTRIBUTE_HIDDEN.getValue(), 0L, 0L));
+
+        try {
+            filter.setExcludeAttributes("unknown");
+            fail();
+        } catch (final CrawlerSystemException e) {
+            // expected
+        }
+    }
+
+    public void test_sizeAndTime() {
+        final SmbListingFilter filter = new SmbListingFilter();
+        filter.setMinSize(10L);
+        filter.setMaxSize(100L);
+        filter.setModifiedAfter(1000L);
+        filter.setModifiedBefore(2000L);
+        assertTrue(filter.accept("a.txt", FILE, 10L, 1000L));
+        assertFalse(filter.accept("a.txt", FILE, 9L, 1000L));
+        assertFalse(filter.accept("a.txt", FILE, 101L, 1000L));
+        assertFalse(filter.accept("a.txt", FILE, 50L, 999L));
+        assertFalse(filter.accept("a.txt", FILE, 50L, 2000L));
+        assertTrue(filter.accept("dir", DIRECTORY, 0L, 0L));
+    }
+}
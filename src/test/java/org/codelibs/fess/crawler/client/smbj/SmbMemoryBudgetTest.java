@@ -0,0 +1,84 @@
+/*
+ * Copyright 2012-2024 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.client.smbj;
+
+import java.nio.ByteBuffer;
+
+import org.dbflute.utflute.core.PlainTestCase;
+
+public class SmbMemoryBudgetTest extends PlainTestCase {
+
+    public void test_reserve() {
+        final SmbMemoryBudget budget = new SmbMemoryBudget(100L);
+        assertTrue(budget.reserve(60L, 0L));
+        assertFalse(budget.reserve(50L, 0L));
+        assertFalse(budget.reserve(101L, 1000L));
+        assertTrue(budget.reserve(40L, 0L));
+        assertEquals(100L, budget.getUsedBytes());
+        budget.release(60L);
+        assertEquals(40L, budget.getUsedBytes());
+        assertTrue(budget.reserve(50L, 0L));
+    }
+
+    public void test_wait() throws Exception {
+        final SmbMemoryBudget budget = new SmbMemoryBudget(100L);
+        assertTrue(budget.reserve(100L, 0L));
+        final Thread thread = new Thread(() -> {
+            try {
+                Thread.sleep(100L);
+            } catch (final InterruptedException e) {
+                // ignore
+            }
+            budget.release(100L);
+        });
+        thread.start();
+        assertTrue(budget.reserve(80L, 10000L));
+        assertEquals(1L, budget.getWaitCount());
+        assertFalse(budget.reserve(80L, 50L));
+        thread.join();
+    }
+
+    public void test_responseData() throws Exception {
+        final SmbMemoryBudget budget = new SmbMemoryBudget(100L);
+        assertTrue(budget.reserve(10L, 0L));
+        try (SmbResponseData responseData = new SmbResponseData()) {
+            responseData.setResponseBody(ByteBuffer.allocate(10), null);
+            responseData.setMemoryReservation(budget, 10L);
+        }
+        assertEquals(0L, budget.getUsedBytes());
+    }
+
+    public void test_reserveMemory() {
+        final SmbMemoryBudget budget = new SmbMemoryBudget(100L);
+        final long[] length = { 0L };
+        final SmbFile file = new SmbFile("smb://server/share/test.txt", null) {
+            @Override
+            public long length() {
+                return length[0];
+            }
+        };
+        file.setMemoryBudget(budget);
+
+        assertEquals(0L, file.reserveMemory(1000));
+        assertEquals(0L, budget.getSpillCount());
+
+        length[0] = 60L;
+        assertEquals(60L, file.reserveMemory(1000));
+        assertEquals(60L, budget.getUsedBytes());
+        assertEquals(0L, file.reserveMemory(1000));
+        assertEquals(1L, budget.getSpillCount());
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2012-2024 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.client.smbj;
+
+import java.util.EnumSet;
+
+import org.dbflute.utflute.core.PlainTestCase;
+
+import com.hierynomus.msdtyp.SecurityInformation;
+
+public class SmbMetadataCacheTest extends PlainTestCase {
+
+    private static SmbMetadataCache.Entry newEntry(final String fileName) {
+        return new SmbMetadataCache.Entry(fileName, null, null, null, EnumSet.of(SecurityInformation.OWNER_SECURITY_INFORMATION));
+    }
+
+    public void test_take() {
+        final SmbMetadataCache cache = new SmbMetadataCache(2, 60000L);
+        cache.put("smb://host/share/a.txt", newEntry("a.txt"));
+        assertTrue(cache.contains("smb://host/share/a.txt"));
+        assertEquals("a.txt", cache.take("smb://host/share/a.txt").fileName);
+        assertNull(cache.take("smb://host/share/a.txt"));
+        assertEquals(1L, cache.getHitCount());
+        assertEquals(1L, cache.getMissCount());
+    }
+
+    public void test_maxSize() {
+        final SmbMetadataCache cache = new SmbMetadataCache(2, 60000L);
+        cache.put("smb://host/share/a.txt", newEntry("a.txt"));
+        cache.put("smb://host/share/b.txt", newEntry("b.txt"));
+        cache.put("smb://host/share/c.txt", newEntry("c.txt"));
+        assertEquals(2, cache.size());
+        assertFalse(cache.contains("smb://host/share/a.txt"));
+        assertTrue(cache.contains("smb://host/share/c.txt"));
+    }
+
+    public void test_ttl() {
+        final SmbMetadataCache cache = new SmbMetadataCache(2, -1L);
+        cache.put("smb://host/share/a.txt", newEntry("a.txt"));
+        assertFalse(cache.contains("smb://host/share/a.txt"));
+        assertNull(cache.take("smb://host/share/a.txt"));
+    }
+
+    public void test_prefetch() throws Exception {
+        System.setProperty("java.protocol.handler.pkgs", "org.codelibs.fess.net.protocol");
+        final SmbMetadataCache cache = new SmbMetadataCache(10, 60000L);
+        try (SmbMetadataPrefetcher prefetcher = new SmbMetadataPrefetcher(cache, 2, 10, 1)) {
+            final SmbFile[] files = new SmbFile[3];
+            for (int i = 0; i < files.length; i++) {
+                final String name = (char) ('a' + i) + ".txt";
+                files[i] = new SmbFile("smb3://host/share/" + name, null) {
+                    @Override
+                    protected SmbMetadataCache.Entry getFileInfoEntry() {
+                        return newEntry(name);
+                    }
+                };
+                prefetcher.prefetch(files[i]);
+            }
+            for (int i = 0; i < 100 && prefetcher.getPrefetchedCount() < 3; i++) {
+                Thread.sleep(10L);
+            }
+            assertEquals(3L, prefetcher.getPrefetchedCount());
+            assertEquals("b.txt", cache.take(files[1].toString()).fileName);
+        }
+    }
+}
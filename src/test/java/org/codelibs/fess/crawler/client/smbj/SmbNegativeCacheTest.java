@@ -0,0 +1,54 @@
+/*
+ * Copyright 2012-2024 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.client.smbj;
+
+import org.dbflute.utflute.core.PlainTestCase;
+
+public class SmbNegativeCacheTest extends PlainTestCase {
+
+    public void test_exact() {
+        final SmbNegativeCache cache = new SmbNegativeCache(10, 60000L);
+        cache.put("smb://host/share/dir/missing.txt", 404, false);
+        assertEquals(404, cache.getStatusCode("smb://host/share/dir/missing.txt"));
+        assertEquals(404, cache.getStatusCode("smb://host/share/dir/missing.txt?x=1"));
+        assertEquals(0, cache.getStatusCode("smb://host/share/dir/missing.txt/child"));
+        assertEquals(0, cache.getStatusCode("smb://host/share/dir/other.txt"));
+        assertEquals(2L, cache.getHitCount());
+    }
+
+    public void test_subtree() {
+        final SmbNegativeCache cache = new SmbNegativeCache(10, 60000L);
+        cache.put("smb://host/share/denied/", 403, true);
+        assertEquals(403, cache.getStatusCode("smb://host/share/denied"));
+        assertEquals(403, cache.getStatusCode("smb://host/share/denied/a/b.txt"));
+        assertEquals(0, cache.getStatusCode("smb://host/share/denied2/b.txt"));
+        assertEquals(0, cache.getStatusCode("smb://host/share"));
+        assertEquals(0, cache.getStatusCode("smb://other/share/denied/b.txt"));
+    }
+
+    public void test_expire() {
+        final SmbNegativeCache cache = new SmbNegativeCache(1, -1L);
+        cache.put("smb://host/share/a.txt", 404, false);
+        assertEquals(0, cache.getStatusCode("smb://host/share/a.txt"));
+        assertEquals(0, cache.size());
+
+        final SmbNegativeCache smallCache = new SmbNegativeCache(1, 60000L);
+        smallCache.put("smb://host/share/a.txt", 404, false);
+        smallCache.put("smb://host/share/b.txt", 404, false);
+        assertEquals(0, smallCache.getStatusCode("smb://host/share/a.txt"));
+        assertEquals(404, smallCache.getStatusCode("smb://host/share/b.txt"));
+    }
+}
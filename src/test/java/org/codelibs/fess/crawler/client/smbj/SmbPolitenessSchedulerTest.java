@@ -0,0 +1,69 @@
+/*
+ * Copyright 2012-2024 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.client.smbj;
+
+import java.time.LocalTime;
+import java.util.List;
+
+import org.codelibs.fess.crawler.client.smbj.SmbPolitenessScheduler.Permit;
+import org.codelibs.fess.crawler.client.smbj.pool.SmbSessionKey;
+import org.codelibs.fess.crawler.exception.CrawlingAccessException;
+import org.dbflute.utflute.core.PlainTestCase;
+
+public class SmbPolitenessSchedulerTest extends PlainTestCase {
+
+    public void test_parse() {
+        final List<SmbPolitenessProfile> profileList = SmbPolitenessProfile.parse("08:00-18:00=4/1048576; 22:00-06:00=32/0;*=16");
+        assertEquals(3, profileList.size());
+        assertEquals(4, profileList.get(0).getMaxConcurrency());
+        assertEquals(1048576L, profileList.get(0).getMaxBytesPerSecond());
+        assertTrue(profileList.get(0).matches(LocalTime.of(8, 0)));
+        assertFalse(profileList.get(0).matches(LocalTime.of(18, 0)));
+        assertTrue(profileList.get(1).matches(LocalTime.of(23, 30)));
+        assertTrue(profileList.get(1).matches(LocalTime.of(5, 59)));
+        assertFalse(profileList.get(1).matches(LocalTime.of(12, 0)));
+        assertTrue(profileList.get(2).matches(LocalTime.of(12, 0)));
+        assertEquals(0L, profileList.get(2).getMaxBytesPerSecond());
+
+        try {
+            SmbPolitenessProfile.parse("8-18=x");
+            fail();
+        } catch (final Exception e) {
+            // ok
+        }
+    }
+
+    public void test_acquire() {
+        final SmbPolitenessScheduler scheduler = new SmbPolitenessScheduler(SmbPolitenessProfile.parse("*=1/0"), false);
+        final SmbSessionKey key = new SmbSessionKey("server1", 445);
+        final Permit permit = scheduler.acquire(key, "share1", 0L);
+        try {
+            scheduler.acquire(key, "share2", System.currentTimeMillis() + 100L);
+            fail();
+        } catch (final CrawlingAccessException e) {
+            // ok
+        }
+        scheduler.acquire(new SmbSessionKey("server2", 445), "share1", System.currentTimeMillis() + 100L).close();
+        permit.close();
+        scheduler.acquire(key, "share2", System.currentTimeMillis() + 100L).close();
+
+        final SmbPolitenessScheduler perShare = new SmbPolitenessScheduler(SmbPolitenessProfile.parse("*=1/0"), true);
+        try (Permit p1 = perShare.acquire(key, "share1", 0L); Permit p2 = perShare.acquire(key, "share2", 0L)) {
+            assertNotNull(p1);
+            assertNotNull(p2);
+        }
+    }
+}
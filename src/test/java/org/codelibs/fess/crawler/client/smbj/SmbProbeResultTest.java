@@ -0,0 +1,42 @@
+/*
+ * Copyright 2012-2024 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.client.smbj;
+
+import org.codelibs.fess.crawler.client.smbj.SmbProbeResult.Status;
+import org.dbflute.utflute.core.PlainTestCase;
+
+import com.hierynomus.mserref.NtStatus;
+import com.hierynomus.msfscc.FileAttributes;
+
+public class SmbProbeResultTest extends PlainTestCase {
+
+    public void test_of() {
+        assertEquals(Status.FILE, SmbProbeResult.of(NtStatus.STATUS_SUCCESS.getValue(), FileAttributes.FILE_ATTRIBUTE_ARCHIVE.getValue())
+                .getStatus());
+        assertEquals(Status.DIRECTORY,
+                SmbProbeResult.of(NtStatus.STATUS_SUCCESS.getValue(), FileAttributes.FILE_ATTRIBUTE_DIRECTORY.getValue()).getStatus());
+        assertEquals(Status.NOT_FOUND, SmbProbeResult.of(NtStatus.STATUS_OBJECT_NAME_NOT_FOUND.getValue(), 0L).getStatus());
+        assertEquals(Status.NOT_FOUND, SmbProbeResult.of(NtStatus.STATUS_OBJECT_PATH_NOT_FOUND.getValue(), 0L).getStatus());
+        assertEquals(Status.ACCESS_DENIED, SmbProbeResult.of(NtStatus.STATUS_ACCESS_DENIED.getValue(), 0L).getStatus());
+        assertEquals(Status.SHARING_VIOLATION, SmbProbeResult.of(NtStatus.STATUS_SHARING_VIOLATION.getValue(), 0L).getStatus());
+        assertEquals(Status.UNKNOWN, SmbProbeResult.of(NtStatus.STATUS_PATH_NOT_COVERED.getValue(), 0L).getStatus());
+        assertEquals(Status.UNKNOWN, SmbProbeResult.of(0xC0FFEEEEL, 0L).getStatus());
+
+        assertEquals(404, Status.NOT_FOUND.getStatusCode());
+        assertEquals(403, Status.ACCESS_DENIED.getStatusCode());
+        assertEquals(503, Status.SHARING_VIOLATION.getStatusCode());
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2012-2024 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.client.smbj;
+
+import java.net.SocketException;
+
+import org.dbflute.utflute.core.PlainTestCase;
+
+import com.hierynomus.mserref.NtStatus;
+import com.hierynomus.mssmb2.SMB2MessageCommandCode;
+import com.hierynomus.mssmb2.SMBApiException;
+import com.hierynomus.smbj.common.SMBRuntimeException;
+
+public class SmbRetryPolicyTest extends PlainTestCase {
+
+    public void test_classify() {
+        final SMBApiException expired = newException(NtStatus.STATUS_NETWORK_SESSION_EXPIRED);
+        assertTrue(SmbExceptionUtil.isRetryable(expired));
+        assertTrue(SmbExceptionUtil.isSessionBroken(expired));
+
+        final SMBApiException notFound = newException(NtStatus.STATUS_OBJECT_NAME_NOT_FOUND);
+        assertFalse(SmbExceptionUtil.isRetryable(notFound));
+        assertFalse(SmbExceptionUtil.isSessionBroken(notFound));
+        assertEquals(NtStatus.STATUS_OBJECT_NAME_NOT_FOUND, SmbExceptionUtil.getStatus(new RuntimeException(notFound)));
+
+        final SMBRuntimeException reset = new SMBRuntimeException(new SocketException("Connection reset"));
+        assertTrue(SmbExceptionUtil.isRetryable(reset));
+        assertTrue(SmbExceptionUtil.isSessionBroken(reset));
+
+        assertFalse(SmbExceptionUtil.isRetryable(new SmbCircuitOpenException("open")));
+        assertFalse(SmbExceptionUtil.isRetryable(new IllegalStateException()));
+    }
+
+    public void test_canRetry() {
+        final SmbRetryPolicy policy = new SmbRetryPolicy(2, 100L, 1000L);
+        final SMBApiException deleted = newException(NtStatus.STATUS_USER_SESSION_DELETED);
+        assertTrue(policy.canRetry(deleted, 0, 0L, 0L));
+        assertTrue(policy.canRetry(deleted, 1, 0L, 0L));
+        assertFalse(policy.canRetry(deleted, 2, 0L, 0L));
+        assertFalse(policy.canRetry(newException(NtStatus.STATUS_ACCESS_DENIED), 0, 0L, 0L));
+        assertFalse(policy.canRetry(deleted, 0, 1000L, System.currentTimeMillis() + 500L));
+    }
+
+    public void test_getDelay() {
+        final SmbRetryPolicy policy = new SmbRetryPolicy(10, 100L, 1000L);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(policy.getDelay(0) <= 100L);
+            assertTrue(policy.getDelay(2) <= 400L);
+            assertTrue(policy.getDelay(9) <= 1000L);
+        }
+    }
+
+    private SMBApiException newException(final NtStatus status) {
+        return new SMBApiException(status.getValue(), SMB2MessageCommandCode.SMB2_CREATE, null);
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2012-2024 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.client.smbj;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.dbflute.utflute.core.PlainTestCase;
+
+public class SmbSidCacheTest extends PlainTestCase {
+
+    public void test_persist() throws Exception {
+        final Path file = Files.createTempDirectory("smbj-").resolve("sid.cache");
+        try (SmbSidCache cache = new SmbSidCache(file, 60000L)) {
+            assertNull(cache.getNames("S-1-5-21-1-2-3-1000"));
+            cache.putNames("S-1-5-21-1-2-3-1000", "taro", "EXAMPLE");
+            cache.putNames("S-1-5-21-1-2-3-1001", "hanako", null);
+            cache.putMembers("S-1-5-21-1-2-3-512", new String[] { "S-1-5-21-1-2-3-1000", "S-1-5-21-1-2-3-1001" });
+            cache.putMembers("S-1-5-21-1-2-3-513", new String[0]);
+        }
+
+        try (SmbSidCache cache = new SmbSidCache(file, 60000L)) {
+            assertEquals(Arrays.asList("taro", "EXAMPLE"), Arrays.asList(cache.getNames("S-1-5-21-1-2-3-1000")));
+            assertEquals(Arrays.asList("hanako", null), Arrays.asList(cache.getNames("S-1-5-21-1-2-3-1001")));
+            assertEquals(Arrays.asList("S-1-5-21-1-2-3-1000", "S-1-5-21-1-2-3-1001"),
+                    Arrays.asList(cache.getMembers("S-1-5-21-1-2-3-512")));
+            assertEquals(0, cache.getMembers("S-1-5-21-1-2-3-513").length);
+        }
+    }
+
+    public void test_expire() throws Exception {
+        final Path file = Files.createTempDirectory("smbj-").resolve("sid.cache");
+        try (SmbSidCache cache = new SmbSidCache(file, -1L)) {
+            cache.putNames("S-1-5-21-1-2-3-1000", "taro", "EXAMPLE");
+            cache.putNames("S-1-5-21-1-2-3-1000", "taro", "EXAMPLE");
+            cache.putNames("S-1-5-21-1-2-3-1000", "taro", "EXAMPLE");
+            assertNull(cache.getNames("S-1-5-21-1-2-3-1000"));
+        }
+        assertEquals(3, Files.readAllLines(file).size());
+
+        try (SmbSidCache cache = new SmbSidCache(file, 60000L)) {
+            assertNull(cache.getNames("S-1-5-21-1-2-3-1000"));
+        }
+        // compacted on load
+        assertEquals(0, Files.readAllLines(file).size());
+    }
+
+    public void test_flush() throws Exception {
+        final Path file = Files.createTempDirectory("smbj-").resolve("sid.cache");
+        try (SmbSidCache cache = new SmbSidCache(file, 60000L)) {
+            cache.setFlushSize(3);
+            cache.setFlushInterval(Long.MAX_VALUE);
+            cache.putNames("S-1-5-21-1-2-3-1000", "taro", "EXAMPLE");
+            cache.putNames("S-1-5-21-1-2-3-1001", "hanako", null);
+            assertEquals(Arrays.asList("taro", "EXAMPLE"), Arrays.asList(cache.getNames("S-1-5-21-1-2-3-1000")));
+            assertEquals(0, Files.readAllLines(file).size());
+
+            cache.putMembers("S-1-5-21-1-2-3-512", new String[] { "S-1-5-21-1-2-3-1000" });
+            assertEquals(3, Files.readAllLines(file).size());
+
+            cache.putNames("S-1-5-21-1-2-3-1002", "jiro", null);
+            assertEquals(3, Files.readAllLines(file).size());
+            cache.flush();
+            assertEquals(4, Files.readAllLines(file).size());
+
+            cache.putNames("S-1-5-21-1-2-3-1003", "saburo", null);
+        }
+        assertEquals(5, Files.readAllLines(file).size());
+    }
+}
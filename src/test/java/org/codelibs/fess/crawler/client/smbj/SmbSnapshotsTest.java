@@ -0,0 +1,70 @@
+/*
+ * Copyright 2012-2024 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.client.smbj;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import org.dbflute.utflute.core.PlainTestCase;
+
+public class SmbSnapshotsTest extends PlainTestCase {
+
+    public void test_parse() {
+        final byte[] data = createSnapshotArray(2, "@GMT-2024.01.02-03.04.05", "@GMT-2024.02.01-00.00.00");
+        assertEquals(2, SmbSnapshots.getCount(data));
+        assertEquals(data.length, SmbSnapshots.getRequiredSize(data));
+        assertEquals(Arrays.asList("@GMT-2024.01.02-03.04.05", "@GMT-2024.02.01-00.00.00"), SmbSnapshots.parse(data));
+
+        // only the header is returned when the output is too small
+        final byte[] header = Arrays.copyOf(data, SmbSnapshots.MIN_OUTPUT_SIZE);
+        ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN).putInt(4, 0);
+        assertEquals(2, SmbSnapshots.getCount(header));
+        assertEquals(data.length, SmbSnapshots.getRequiredSize(header));
+        assertTrue(SmbSnapshots.parse(header).isEmpty());
+
+        final byte[] empty = createSnapshotArray(0);
+        assertEquals(0, SmbSnapshots.getCount(empty));
+        assertTrue(SmbSnapshots.parse(empty).isEmpty());
+        assertTrue(SmbSnapshots.parse(new byte[4]).isEmpty());
+    }
+
+    public void test_getLatest() {
+        assertEquals("@GMT-2024.02.01-00.00.00",
+                SmbSnapshots.getLatest(List.of("@GMT-2023.12.31-23.59.59", "@GMT-2024.02.01-00.00.00", "@GMT-2024.01.15-12.00.00")));
+        assertNull(SmbSnapshots.getLatest(List.of()));
+        assertNull(SmbSnapshots.getLatest(List.of("invalid")));
+
+        assertTrue(SmbSnapshots.isToken("@GMT-2024.01.02-03.04.05"));
+        assertFalse(SmbSnapshots.isToken("@GMT-2024.1.2-3.4.5"));
+        assertFalse(SmbSnapshots.isToken(SmbSnapshots.LATEST));
+        assertFalse(SmbSnapshots.isToken(null));
+    }
+
+    private byte[] createSnapshotArray(final int count, final String... tokens) {
+        final ByteArrayOutputStream array = new ByteArrayOutputStream();
+        for (final String token : tokens) {
+            array.writeBytes((token + "\0").getBytes(StandardCharsets.UTF_16LE));
+        }
+        array.writeBytes(new byte[2]);
+        final ByteBuffer buffer = ByteBuffer.allocate(SmbSnapshots.HEADER_SIZE + array.size()).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(count).putInt(tokens.length).putInt(array.size()).put(array.toByteArray());
+        return buffer.array();
+    }
+}
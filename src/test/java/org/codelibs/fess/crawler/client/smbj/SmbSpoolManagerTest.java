@@ -0,0 +1,104 @@
+/*
+ * Copyright 2012-2024 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.client.smbj;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.DeferredFileOutputStream;
+import org.dbflute.utflute.core.PlainTestCase;
+
+public class SmbSpoolManagerTest extends PlainTestCase {
+
+    public void test_spill() throws Exception {
+        final Path directory = Files.createTempDirectory("spool");
+        try (SmbSpoolManager manager = new SmbSpoolManager(directory, 10)) {
+            final Path file = manager.createFile();
+            Files.write(file, "hello".getBytes(StandardCharsets.UTF_8));
+            manager.recordSpill(file, 1000L);
+            assertEquals(5L, manager.getUsedBytes());
+            assertEquals(1L, manager.getSpillCount());
+            assertEquals(5L, manager.getSpilledBytes());
+            assertEquals(5_000_000L, manager.getSpillThroughput());
+
+            try (SmbResponseData responseData = new SmbResponseData()) {
+                responseData.setResponseBody(file, manager);
+                assertTrue(responseData.hasResponseBody());
+                try (InputStream in = responseData.getResponseBody()) {
+                    assertEquals("hello", IOUtils.toString(in, StandardCharsets.UTF_8));
+                }
+            }
+            manager.close();
+            assertFalse(Files.exists(file));
+            assertEquals(0L, manager.getUsedBytes());
+        }
+    }
+
+    public void test_outputStream() throws Exception {
+        final Path directory = Files.createTempDirectory("spool");
+        try (SmbSpoolManager manager = new SmbSpoolManager(directory, 10)) {
+            final DeferredFileOutputStream small = manager.createOutputStream(10);
+            try (small) {
+                small.write("hello".getBytes(StandardCharsets.UTF_8));
+            }
+            assertTrue(small.isInMemory());
+
+            final DeferredFileOutputStream large = manager.createOutputStream(3);
+            try (large) {
+                large.write("hello".getBytes(StandardCharsets.UTF_8));
+            }
+            assertFalse(large.isInMemory());
+            final Path file = large.getPath();
+            assertEquals(directory, file.getParent());
+            manager.recordSpill(file, 1000L);
+            assertEquals(5L, manager.getUsedBytes());
+
+            try (InputStream in = manager.openTemporary(file)) {
+                assertEquals("hello", IOUtils.toString(in, StandardCharsets.UTF_8));
+            }
+            manager.close();
+            assertFalse(Files.exists(file));
+            assertEquals(0L, manager.getUsedBytes());
+        }
+    }
+
+    public void test_releaseAfterClose() throws Exception {
+        final Path directory = Files.createTempDirectory("spool");
+        final SmbSpoolManager manager = new SmbSpoolManager(directory, 10);
+        final Path file = manager.createFile();
+        Files.write(file, "hello".getBytes(StandardCharsets.UTF_8));
+        manager.recordSpill(file, 1000L);
+        manager.close();
+
+        manager.release(file);
+        assertFalse(Files.exists(file));
+        assertEquals(0L, manager.getUsedBytes());
+    }
+
+    public void test_deleteStaleFiles() throws Exception {
+        final Path directory = Files.createTempDirectory("spool");
+        final Path stale = Files.createFile(directory.resolve("crawler-SmbClient-1.spool"));
+        final Path other = Files.createFile(directory.resolve("other.txt"));
+        try (SmbSpoolManager manager = new SmbSpoolManager(directory, 10)) {
+            manager.deleteStaleFiles();
+            assertFalse(Files.exists(stale));
+            assertTrue(Files.exists(other));
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2012-2024 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.client.smbj.pool;
+
+import org.codelibs.fess.crawler.client.smbj.SmbCircuitOpenException;
+import org.codelibs.fess.crawler.client.smbj.pool.SmbCircuitBreaker.State;
+import org.dbflute.utflute.core.PlainTestCase;
+
+public class SmbCircuitBreakerTest extends PlainTestCase {
+
+    public void test_openAndClose() throws Exception {
+        final SmbCircuitBreaker circuitBreaker = new SmbCircuitBreaker(2, 100L);
+        final SmbSessionKey key = new SmbSessionKey("server1", 445);
+        final SmbSessionKey other = new SmbSessionKey("server2", 445);
+
+        circuitBreaker.acquirePermission(key);
+        circuitBreaker.recordFailure(key);
+        assertEquals(State.CLOSED, circuitBreaker.getState(key));
+        circuitBreaker.acquirePermission(key);
+        circuitBreaker.recordFailure(key);
+        assertEquals(State.OPEN, circuitBreaker.getState(key));
+
+        try {
+            circuitBreaker.checkState(key);
+            fail();
+        } catch (final SmbCircuitOpenException e) {
+            // ok
+        }
+        circuitBreaker.checkState(other);
+        assertEquals(State.CLOSED, circuitBreaker.getState(other));
+
+        Thread.sleep(150L);
+        circuitBreaker.checkState(key);
+        circuitBreaker.acquirePermission(key);
+        assertEquals(State.HALF_OPEN, circuitBreaker.getState(key));
+        try {
+            circuitBreaker.acquirePermission(key);
+            fail();
+        } catch (final SmbCircuitOpenException e) {
+            // ok
+        }
+
+        circuitBreaker.recordSuccess(key);
+        assertEquals(State.CLOSED, circuitBreaker.getState(key));
+        circuitBreaker.checkState(key);
+    }
+
+    public void test_halfOpenFailure() throws Exception {
+        final SmbCircuitBreaker circuitBreaker = new SmbCircuitBreaker(1, 50L);
+        final SmbSessionKey key = new SmbSessionKey("server1", -1);
+
+        circuitBreaker.recordFailure(key);
+        assertEquals(State.OPEN, circuitBreaker.getState(key));
+        Thread.sleep(100L);
+        circuitBreaker.acquirePermission(key);
+        circuitBreaker.recordFailure(key);
+        assertEquals(State.OPEN, circuitBreaker.getState(key));
+        try {
+            circuitBreaker.acquirePermission(key);
+            fail();
+        } catch (final SmbCircuitOpenException e) {
+            // ok
+        }
+    }
+}
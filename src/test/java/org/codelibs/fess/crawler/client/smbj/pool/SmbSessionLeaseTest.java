@@ -0,0 +1,127 @@
+/*
+ * Copyright 2012-2024 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.client.smbj.pool;
+
+import java.io.IOException;
+
+import org.apache.commons.pool2.BaseKeyedPooledObjectFactory;
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.impl.DefaultPooledObject;
+import org.apache.commons.pool2.impl.GenericKeyedObjectPool;
+import org.codelibs.fess.crawler.client.smbj.SmbSession;
+import org.dbflute.utflute.core.PlainTestCase;
+
+public class SmbSessionLeaseTest extends PlainTestCase {
+
+    public void test_lease() throws Exception {
+        final SmbSessionKey key = new SmbSessionKey("server1", 445);
+        final SmbSessionKey other = new SmbSessionKey("server2", 445);
+        try (GenericKeyedObjectPool<SmbSessionKey, SmbSession> pool = createPool()) {
+            final SmbSessionLoader loader = new SmbSessionLoader(key, pool);
+            final SmbSessionLoader otherLoader = new SmbSessionLoader(other, pool);
+            final SmbSession session;
+            try (SmbSessionLease lease = SmbSessionLease.open(key, pool)) {
+                assertSame(lease, SmbSessionLease.current(key));
+                assertNull(SmbSessionLease.current(other));
+
+                session = loader.borrowObject();
+                assertTrue(loader.isLeased(session));
+                loader.returnObject(session);
+                assertSame(session, loader.borrowObject());
+                loader.releaseObject(session, new RuntimeException("not broken"));
+                assertSame(session, loader.borrowObject());
+                assertEquals(1, pool.getNumActive(key));
+                assertEquals(1, lease.getBorrowCount());
+
+                // other hosts use the pool as usual
+                final SmbSession otherSession = otherLoader.borrowObject();
+                assertFalse(otherLoader.isLeased(otherSession));
+                otherLoader.returnObject(otherSession);
+                assertEquals(0, pool.getNumActive(other));
+
+            }
+            assertNull(SmbSessionLease.current(key));
+            assertEquals(0, pool.getNumActive(key));
+            assertEquals(1, pool.getNumIdle(key));
+            assertFalse(loader.isLeased(session));
+        }
+    }
+
+    public void test_nestedLease() throws Exception {
+        final SmbSessionKey key = new SmbSessionKey("server1", 445);
+        final SmbSessionKey other = new SmbSessionKey("server2", 445);
+        try (GenericKeyedObjectPool<SmbSessionKey, SmbSession> pool = createPool()) {
+            final SmbSessionLoader loader = new SmbSessionLoader(key, pool);
+            final SmbSessionLoader otherLoader = new SmbSessionLoader(other, pool);
+            try (SmbSessionLease lease = SmbSessionLease.open(key, pool)) {
+                final SmbSession session = loader.borrowObject();
+                try (SmbSessionLease inner = SmbSessionLease.open(key, pool)) {
+                    assertSame(lease, inner);
+                    assertSame(session, loader.borrowObject());
+                }
+                // the inner close keeps the session leased
+                assertSame(lease, SmbSessionLease.current(key));
+                assertTrue(loader.isLeased(session));
+                assertEquals(1, pool.getNumActive(key));
+
+                try (SmbSessionLease otherLease = SmbSessionLease.open(other, pool)) {
+                    assertNotSame(lease, otherLease);
+                    assertSame(otherLease, SmbSessionLease.current(other));
+                    assertNull(SmbSessionLease.current(key));
+                    assertTrue(otherLoader.isLeased(otherLoader.borrowObject()));
+                }
+                assertEquals(0, pool.getNumActive(other));
+                assertSame(lease, SmbSessionLease.current(key));
+                assertNull(SmbSessionLease.current(other));
+            }
+            assertNull(SmbSessionLease.current(key));
+            assertEquals(0, pool.getNumActive(key));
+        }
+    }
+
+    public void test_brokenSession() throws Exception {
+        final SmbSessionKey key = new SmbSessionKey("server1", 445);
+        try (GenericKeyedObjectPool<SmbSessionKey, SmbSession> pool = createPool()) {
+            final SmbSessionLoader loader = new SmbSessionLoader(key, pool);
+            try (SmbSessionLease lease = SmbSessionLease.open(key, pool)) {
+                final SmbSession session = loader.borrowObject();
+                loader.releaseObject(session, new IOException("broken"));
+                assertEquals(0, pool.getNumActive(key));
+                assertFalse(loader.isLeased(session));
+
+                final SmbSession newSession = loader.borrowObject();
+                assertNotSame(session, newSession);
+                assertTrue(loader.isLeased(newSession));
+                assertEquals(2, lease.getBorrowCount());
+            }
+            assertEquals(1, pool.getNumIdle(key));
+        }
+    }
+
+    private GenericKeyedObjectPool<SmbSessionKey, SmbSession> createPool() {
+        return new GenericKeyedObjectPool<>(new BaseKeyedPooledObjectFactory<SmbSessionKey, SmbSession>() {
+            @Override
+            public SmbSession create(final SmbSessionKey key) {
+                return new SmbSession(null);
+            }
+
+            @Override
+            public PooledObject<SmbSession> wrap(final SmbSession value) {
+                return new DefaultPooledObject<>(value);
+            }
+        });
+    }
+}
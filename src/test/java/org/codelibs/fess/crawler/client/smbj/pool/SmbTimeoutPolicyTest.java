@@ -0,0 +1,92 @@
+/*
+ * Copyright 2012-2024 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.client.smbj.pool;
+
+import java.util.concurrent.TimeUnit;
+
+import org.codelibs.fess.crawler.client.smbj.pool.SmbTimeoutPolicy.Operation;
+import org.dbflute.utflute.core.PlainTestCase;
+
+import com.hierynomus.smbj.SmbConfig;
+
+public class SmbTimeoutPolicyTest extends PlainTestCase {
+
+    public void test_getTimeout() {
+        final SmbTimeoutPolicy policy = new SmbTimeoutPolicy(0.99d, 3.0d, 500L, 100, 10);
+        final SmbSessionKey key = new SmbSessionKey("server1", 445);
+        for (int i = 0; i < 9; i++) {
+            policy.record(key, Operation.READ, 400L);
+        }
+        assertEquals(-1L, policy.getLatency(key, Operation.READ));
+        assertEquals(60000L, policy.getTimeout(key, Operation.READ, 60000L));
+
+        policy.record(key, Operation.READ, 1000L);
+        assertEquals(1000L, policy.getLatency(key, Operation.READ));
+        assertEquals(3000L, policy.getTimeout(key, Operation.READ, 60000L));
+        assertEquals(2000L, policy.getTimeout(key, Operation.READ, 2000L));
+        assertEquals(60000L, policy.getTimeout(key, Operation.TRANSACT, 60000L));
+        assertEquals(60000L, policy.getTimeout(new SmbSessionKey("server2", 445), Operation.READ, 60000L));
+
+        for (int i = 0; i < 100; i++) {
+            policy.record(key, Operation.TRANSACT, 10L);
+        }
+        assertEquals(500L, policy.getTimeout(key, Operation.TRANSACT, 60000L));
+    }
+
+    public void test_isOutdated() {
+        final SmbTimeoutPolicy policy = new SmbTimeoutPolicy(0.99d, 3.0d, 500L, 100, 1);
+        final SmbSessionKey key = new SmbSessionKey("server1", 445);
+        final SmbConfig config = SmbConfig.builder().withTimeout(60, TimeUnit.SECONDS).build();
+        assertFalse(policy.isOutdated(key, config, config));
+
+        policy.record(key, Operation.READ, 1000L);
+        policy.record(key, Operation.TRANSACT, 1000L);
+        final SmbConfig sessionConfig = policy.getConfig(key, config);
+        assertTrue(policy.isOutdated(key, config, config));
+        assertFalse(policy.isOutdated(key, sessionConfig, config));
+
+        // a slower host needs longer timeouts at once
+        policy.record(key, Operation.TRANSACT, 3000L);
+        assertTrue(policy.isOutdated(key, sessionConfig, config));
+
+        // a faster host shortens them only beyond the tolerance
+        final SmbTimeoutPolicy fasterPolicy = new SmbTimeoutPolicy(0.5d, 3.0d, 500L, 3, 1);
+        fasterPolicy.record(key, Operation.READ, 1000L);
+        fasterPolicy.record(key, Operation.TRANSACT, 1000L);
+        final SmbConfig fasterConfig = fasterPolicy.getConfig(key, config);
+        fasterPolicy.record(key, Operation.TRANSACT, 600L);
+        fasterPolicy.record(key, Operation.TRANSACT, 600L);
+        assertFalse(fasterPolicy.isOutdated(key, fasterConfig, config));
+        fasterPolicy.record(key, Operation.TRANSACT, 200L);
+        fasterPolicy.record(key, Operation.TRANSACT, 200L);
+        assertTrue(fasterPolicy.isOutdated(key, fasterConfig, config));
+    }
+
+    public void test_getConfig() {
+        final SmbTimeoutPolicy policy = new SmbTimeoutPolicy(0.99d, 3.0d, 500L, 100, 1);
+        final SmbSessionKey key = new SmbSessionKey("server1", 445);
+        final SmbConfig config = SmbConfig.builder().withTimeout(60, TimeUnit.SECONDS).withSoTimeout(60, TimeUnit.SECONDS).build();
+        assertSame(config, policy.getConfig(key, config));
+
+        policy.record(key, Operation.READ, 2000L);
+        policy.record(key, Operation.TRANSACT, 100L);
+        final SmbConfig adapted = policy.getConfig(key, config);
+        assertEquals(6000L, adapted.getReadTimeout());
+        assertEquals(500L, adapted.getTransactTimeout());
+        assertEquals(6000, adapted.getSoTimeout());
+        assertEquals(60000L, adapted.getWriteTimeout());
+    }
+}